@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks with the regular JMH options, but unless told otherwise
+ * writes the results as JSON to target/jmh-result.json, so runs of different
+ * releases can be compared.
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options] [benchmark regexp...]
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class Main
+{
+   public static void main(String args[]) throws Exception
+   {
+      CommandLineOptions options = new CommandLineOptions(args);
+      if(options.shouldHelp())
+      {
+         options.showHelp();
+         return;
+      }
+      ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+      if(!options.getResultFormat().hasValue())
+      {
+         File result = new File("target/jmh-result.json");
+         result.getParentFile().mkdirs();
+         builder.resultFormat(ResultFormatType.JSON).result(result.getPath());
+      }
+      Runner runner = new Runner(builder.build());
+      if(options.shouldList())
+         runner.list();
+      else
+         runner.run();
+   }
+}
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.benchmarks;
+
+import org.jboss.beach.metadata.javaee.ResourceRefType;
+import org.jboss.beach.metadata.javaee.ResourceRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ResourceRefTypeMerger;
+import org.jboss.beach.metadata.javaee.ResourceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ResourceRefTypeWriter;
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeMerger;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeWriter;
+import org.jboss.beach.metadata.runtime.BinaryCodec;
+import org.jboss.beach.metadata.runtime.BinaryInput;
+import org.jboss.beach.metadata.runtime.BinaryOutput;
+import org.jboss.beach.metadata.runtime.ElementParser;
+import org.jboss.beach.metadata.runtime.ElementWriter;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.jboss.beach.metadata.runtime.WriterSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generated parsers, writers, codecs and mergers over the descriptors in
+ * the corpus.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataBenchmark
+{
+   /**
+    * What is generated for the document element of a descriptor.
+    */
+   private static abstract class Type<T>
+   {
+      final String localName;
+      final ElementParser<? extends T> parser;
+      final ElementWriter<T> writer;
+      final BinaryCodec<T> codec;
+
+      Type(String localName, ElementParser<? extends T> parser, ElementWriter<T> writer, BinaryCodec<T> codec)
+      {
+         this.localName = localName;
+         this.parser = parser;
+         this.writer = writer;
+         this.codec = codec;
+      }
+
+      abstract T merge(T base, T override);
+   }
+
+   private static final Type<ServiceRefType> SERVICE_REF = new Type<ServiceRefType>("service-ref", ServiceRefTypeParser.INSTANCE, ServiceRefTypeWriter.INSTANCE, ServiceRefTypeCodec.INSTANCE)
+   {
+      @Override
+      ServiceRefType merge(ServiceRefType base, ServiceRefType override)
+      {
+         return ServiceRefTypeMerger.merge(base, override);
+      }
+   };
+
+   private static final Type<ResourceRefType> RESOURCE_REF = new Type<ResourceRefType>("resource-ref", ResourceRefTypeParser.INSTANCE, ResourceRefTypeWriter.INSTANCE, ResourceRefTypeCodec.INSTANCE)
+   {
+      @Override
+      ResourceRefType merge(ResourceRefType base, ResourceRefType override)
+      {
+         return ResourceRefTypeMerger.merge(base, override);
+      }
+   };
+
+   private static final String NAMESPACE = ServiceRefTypeWriter.NAMESPACE;
+
+   /**
+    * A descriptor in the corpus, its name starts with the document element.
+    */
+   @Param({"service-ref.xml", "service-ref-large.xml", "resource-ref.xml"})
+   public String document;
+
+   private Type<Object> type;
+   private byte content[];
+   private Object value;
+   private byte encoded[];
+
+   @SuppressWarnings("unchecked")
+   @Setup
+   public void setUp() throws IOException, XMLStreamException
+   {
+      if(document.startsWith(SERVICE_REF.localName))
+         type = (Type<Object>) (Type<?>) SERVICE_REF;
+      else if(document.startsWith(RESOURCE_REF.localName))
+         type = (Type<Object>) (Type<?>) RESOURCE_REF;
+      else
+         throw new IllegalArgumentException("No type for " + document);
+      content = read("/corpus/" + document);
+      value = parse();
+      BinaryOutput out = new BinaryOutput(content.length / 2);
+      type.codec.encode(out, value);
+      encoded = out.toByteArray();
+   }
+
+   private static byte[] read(String name) throws IOException
+   {
+      InputStream in = MetadataBenchmark.class.getResourceAsStream(name);
+      if(in == null)
+         throw new IOException("Can't find " + name);
+      try
+      {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte buf[] = new byte[8192];
+         int n;
+         while((n = in.read(buf)) != -1)
+            out.write(buf, 0, n);
+         return out.toByteArray();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Benchmark
+   public Object parse() throws XMLStreamException
+   {
+      return ParserSupport.parse(new ByteArrayInputStream(content), type.parser);
+   }
+
+   @Benchmark
+   public byte[] write() throws XMLStreamException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+      WriterSupport.write(out, NAMESPACE, type.localName, type.writer, value);
+      return out.toByteArray();
+   }
+
+   /**
+    * Read the descriptor back from the binary form the MetadataCache keeps, to compare with parse.
+    */
+   @Benchmark
+   public Object decode()
+   {
+      return type.codec.decode(new BinaryInput(encoded));
+   }
+
+   /**
+    * Overlay the descriptor on itself, so every keyed item is matched.
+    */
+   @Benchmark
+   public Object merge()
+   {
+      return type.merge(value, value);
+   }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages of a generator run over the JavaEE 6 schemas. It lives in
+ * the generator package to get at the resolution stage.
+ *
+ * The schemas are taken from the javaee module, override with -Dschemas.dir.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratorBenchmark
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.benchmarks.javaee";
+
+   /**
+    * 0 means one thread per processor.
+    */
+   @Param({"1", "0"})
+   public int parallelism;
+
+   private String schemas[];
+   private Generator added;
+
+   @Setup
+   public void setUp() throws IOException
+   {
+      String dir = System.getProperty("schemas.dir", "../javaee/src/main/resources");
+      schemas = new String[] { dir + "/javaee_web_services_client_1_3.xsd", dir + "/javaee_6.xsd" };
+      added = newGenerator();
+      added.add(schemas);
+   }
+
+   /**
+    * Everything the javaee module generates, but nothing is written, so the
+    * disk stays out of the numbers.
+    */
+   private Generator newGenerator()
+   {
+      Generator generator = new Generator(PACKAGE, new File("target/benchmark-sources"));
+      generator.setParallelism(parallelism);
+      generator.setWriteSources(false);
+      generator.setGenerateImplementations(true);
+      generator.setGenerateParsers(true);
+      generator.setGenerateWriters(true);
+      generator.setGenerateCodecs(true);
+      generator.setGenerateImmutables(true);
+      generator.setGenerateMergers(true);
+      generator.setGenerateVisitors(true);
+      return generator;
+   }
+
+   @Benchmark
+   public Generator add() throws IOException
+   {
+      Generator generator = newGenerator();
+      generator.add(schemas);
+      return generator;
+   }
+
+   /**
+    * The resolution of the Java types and properties of every definition, which starts cold each time.
+    */
+   @Benchmark
+   public List<TypeInfo> resolve()
+   {
+      return added.resolve();
+   }
+
+   @Benchmark
+   public Generator generate() throws IOException
+   {
+      added.generate();
+      return added;
+   }
+}
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Collects the source of one generated file. Every thread reuses its own buffer,
+ * so emitting thousands of types does not grow and throw away as many buffers.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+final class CodeWriter
+{
+   private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+   private static final ThreadLocal<CodeWriter> current = new ThreadLocal<CodeWriter>()
+   {
+      @Override
+      protected CodeWriter initialValue()
+      {
+         return new CodeWriter();
+      }
+   };
+
+   private final StringBuilder buffer = new StringBuilder(8192);
+   private boolean open;
+
+   private CodeWriter()
+   {
+   }
+
+   /**
+    * @return an empty writer, the one of this thread unless that is still open
+    */
+   static CodeWriter open()
+   {
+      CodeWriter writer = current.get();
+      if(writer.open)
+         writer = new CodeWriter();
+      writer.buffer.setLength(0);
+      writer.open = true;
+      return writer;
+   }
+
+   void print(String s)
+   {
+      buffer.append(s);
+   }
+
+   void println(String s)
+   {
+      buffer.append(s).append(LINE_SEPARATOR);
+   }
+
+   void println()
+   {
+      buffer.append(LINE_SEPARATOR);
+   }
+
+   /**
+    * Encode the source in the platform encoding, like the PrintStream the
+    * emitters used to write to, and release the writer for reuse.
+    *
+    * @return the source
+    */
+   byte[] finish()
+   {
+      ByteBuffer encoded = Charset.defaultCharset().encode(CharBuffer.wrap(buffer));
+      byte content[] = new byte[encoded.remaining()];
+      encoded.get(content);
+      open = false;
+      return content;
+   }
+}
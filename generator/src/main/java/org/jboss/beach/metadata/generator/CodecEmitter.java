@@ -0,0 +1,321 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Emits the binary codec of a generated type.
+ *
+ * A type is encoded as a presence bitmap of its single valued properties,
+ * followed by the values which are present and the size and items of every
+ * collection.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class CodecEmitter
+{
+   private final String packageName;
+
+   CodecEmitter(String packageName)
+   {
+      this.packageName = packageName;
+   }
+
+   static String className(TypeInfo type)
+   {
+      return type.identifier + "Codec";
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      CodeWriter out = CodeWriter.open();
+      String className = className(type);
+      String impl = ImplementationEmitter.className(type);
+      List<PropertyInfo> properties;
+      if(type.kind == TypeInfo.Kind.ELEMENTS)
+         properties = type.getAllProperties();
+      else if(type.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+      {
+         properties = new ArrayList<PropertyInfo>();
+         properties.add(PropertyInfo.attribute("value", "", null, false));
+         properties.addAll(type.properties);
+      }
+      else
+         throw new IllegalArgumentException("Can't encode " + type);
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("import org.jboss.beach.metadata.runtime.BinaryCodec;");
+      out.println("import org.jboss.beach.metadata.runtime.BinaryInput;");
+      out.println("import org.jboss.beach.metadata.runtime.BinaryOutput;");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated binary codec of {@link " + type.identifier + "}.");
+      out.println(" */");
+      out.println("public final class " + className + " implements BinaryCodec<" + type.identifier + ">");
+      out.println("{");
+      out.println("   /**");
+      out.println("    * Changes whenever the encoding of this type, or any type it contains, changes.");
+      out.println("    */");
+      out.println("   public static final String VERSION = BinaryOutput.FORMAT_VERSION + \":" + version(type) + "\";");
+      out.println();
+      out.println("   public static final " + className + " INSTANCE = new " + className + "();");
+      out.println();
+      // values() clones the array on every call
+      Set<String> enums = new TreeSet<String>();
+      for(PropertyInfo property : properties)
+      {
+         if(property.valueType != null && property.valueType.kind == TypeInfo.Kind.ENUM)
+            enums.add(property.itemType);
+      }
+      for(String e : enums)
+         out.println("   private static final " + e + "[] " + values(e) + " = " + e + ".values();");
+      if(!enums.isEmpty())
+         out.println();
+      out.println("   private " + className + "()");
+      out.println("   {");
+      out.println("   }");
+      out.println();
+      out.println("   public void encode(BinaryOutput out, " + type.identifier + " value)");
+      out.println("   {");
+      out.println("      write(out, value);");
+      out.println("   }");
+      out.println();
+      out.println("   public " + type.identifier + " decode(BinaryInput in)");
+      out.println("   {");
+      out.println("      return read(in);");
+      out.println("   }");
+      out.println();
+
+      int words = (countSingleValued(properties) + 63) / 64;
+      out.println("   public static void write(BinaryOutput out, " + type.identifier + " value)");
+      out.println("   {");
+      for(int i = 0; i < words; i++)
+         out.println("      long presence" + i + " = 0;");
+      int bit = 0;
+      for(PropertyInfo property : properties)
+      {
+         if(property.collection)
+            continue;
+         out.println("      if(value.get" + property.getIdentifier() + "() != null)");
+         out.println("         " + presence(bit++) + ";");
+      }
+      for(int i = 0; i < words; i++)
+         out.println("      out.writeVarLong(presence" + i + ");");
+      bit = 0;
+      for(PropertyInfo property : properties)
+      {
+         String getter = "value.get" + property.getIdentifier() + "()";
+         if(property.collection)
+         {
+            String v = property.getVariable();
+            out.println("      " + property.type + " " + v + " = " + ImplementationEmitter.peek(type, property, "value") + ";");
+            out.println("      out.writeVarInt(" + v + ".size());");
+            out.println("      for(" + property.itemType + " item : " + v + ")");
+            out.println("         " + write(property, "item") + ";");
+         }
+         else
+         {
+            out.println("      if(" + isPresent(bit++) + ")");
+            out.println("         " + write(property, getter) + ";");
+         }
+      }
+      out.println("   }");
+      out.println();
+      out.println("   public static " + impl + " read(BinaryInput in)");
+      out.println("   {");
+      out.println("      " + impl + " result = new " + impl + "();");
+      for(int i = 0; i < words; i++)
+         out.println("      long presence" + i + " = in.readVarLong();");
+      if(countSingleValued(properties) < properties.size())
+         out.println("      int size;");
+      bit = 0;
+      for(PropertyInfo property : properties)
+      {
+         if(property.collection)
+         {
+            // the size is known up front, so allocate exactly that
+            out.println("      size = in.readSize();");
+            out.println("      if(size > 0)");
+            out.println("      {");
+            out.println("         " + property.type + " items = new java.util.ArrayList<" + property.itemType + ">(size);");
+            out.println("         for(int i = 0; i < size; i++)");
+            out.println("            items.add(" + read(property) + ");");
+            out.println("         result.set" + property.getIdentifier() + "(items);");
+            out.println("      }");
+         }
+         else
+         {
+            out.println("      if(" + isPresent(bit++) + ")");
+            out.println("         result.set" + property.getIdentifier() + "(" + read(property) + ");");
+         }
+      }
+      out.println("      return result;");
+      out.println("   }");
+      out.println("}");
+
+      return out.finish();
+   }
+
+   private static int countSingleValued(List<PropertyInfo> properties)
+   {
+      int count = 0;
+      for(PropertyInfo property : properties)
+      {
+         if(!property.collection)
+            count++;
+      }
+      return count;
+   }
+
+   private static String mask(int bit)
+   {
+      return "0x" + Long.toHexString(1L << (bit % 64)) + "L";
+   }
+
+   private static String presence(int bit)
+   {
+      return "presence" + (bit / 64) + " |= " + mask(bit);
+   }
+
+   private static String isPresent(int bit)
+   {
+      return "(presence" + (bit / 64) + " & " + mask(bit) + ") != 0";
+   }
+
+   private static String write(PropertyInfo property, String value)
+   {
+      TypeInfo valueType = property.valueType;
+      if(valueType != null)
+      {
+         switch(valueType.kind)
+         {
+            case ELEMENTS:
+            case SIMPLE_CONTENT:
+               return property.itemType + "Codec.write(out, " + value + ")";
+            case ENUM:
+               return "out.writeVarInt(" + value + ".ordinal())";
+         }
+      }
+      String type = property.itemType;
+      if(type.equals("String"))
+         return "out.writeString(" + value + ")";
+      if(type.equals("Boolean"))
+         return "out.writeBoolean(" + value + ")";
+      if(type.equals("Integer"))
+         return "out.writeSignedVarInt(" + value + ")";
+      if(type.equals("Long"))
+         return "out.writeSignedVarLong(" + value + ")";
+      if(type.equals("java.net.URI"))
+         return "out.writeURI(" + value + ")";
+      if(type.equals("java.util.List<java.net.URI>"))
+         return "out.writeURIList(" + value + ")";
+      if(type.equals("javax.xml.namespace.QName"))
+         return "out.writeQName(" + value + ")";
+      throw new IllegalStateException("Can't encode " + property + " of type " + type);
+   }
+
+   /**
+    * @return the name of the constant holding the values of an enum
+    */
+   private static String values(String enumType)
+   {
+      String s = enumType.substring(enumType.lastIndexOf('.') + 1);
+      StringBuilder sb = new StringBuilder(s.length() + 8);
+      for(int i = 0; i < s.length(); i++)
+      {
+         char c = s.charAt(i);
+         if(i > 0 && Character.isUpperCase(c))
+            sb.append('_');
+         sb.append(Character.toUpperCase(c));
+      }
+      return sb.append("_VALUES").toString();
+   }
+
+   private static String read(PropertyInfo property)
+   {
+      TypeInfo valueType = property.valueType;
+      if(valueType != null)
+      {
+         switch(valueType.kind)
+         {
+            case ELEMENTS:
+            case SIMPLE_CONTENT:
+               return property.itemType + "Codec.read(in)";
+            case ENUM:
+               return values(property.itemType) + "[in.readVarInt()]";
+         }
+      }
+      String type = property.itemType;
+      if(type.equals("String"))
+         return "in.readString()";
+      if(type.equals("Boolean"))
+         return "in.readBoolean()";
+      if(type.equals("Integer"))
+         return "in.readSignedVarInt()";
+      if(type.equals("Long"))
+         return "in.readSignedVarLong()";
+      if(type.equals("java.net.URI"))
+         return "in.readURI()";
+      if(type.equals("java.util.List<java.net.URI>"))
+         return "in.readURIList()";
+      if(type.equals("javax.xml.namespace.QName"))
+         return "in.readQName()";
+      throw new IllegalStateException("Can't decode " + property + " of type " + type);
+   }
+
+   /**
+    * @return a digest of the layout of the type and everything it contains
+    */
+   private static String version(TypeInfo type)
+   {
+      StringBuilder layout = new StringBuilder();
+      layout(type, layout, new HashSet<TypeInfo>());
+      return Manifest.digest(layout.toString().getBytes());
+   }
+
+   private static void layout(TypeInfo type, StringBuilder layout, Set<TypeInfo> visited)
+   {
+      layout.append(type.kind).append(' ').append(type.name);
+      if(!visited.add(type))
+         return;
+      layout.append('{');
+      if(type.kind == TypeInfo.Kind.ENUM)
+         layout.append(type.facets);
+      else
+      {
+         List<PropertyInfo> properties = type.kind == TypeInfo.Kind.ELEMENTS ? type.getAllProperties() : type.properties;
+         for(PropertyInfo property : properties)
+         {
+            layout.append(property.name).append(':').append(property.type).append(';');
+            if(property.valueType != null)
+               layout(property.valueType, layout, visited);
+         }
+      }
+      layout.append('}');
+   }
+}
@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the sources into a directory tree, leaving the sources which did
+ * not change untouched.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class DirectorySink implements CodeSink
+{
+   private final File root;
+
+   public DirectorySink(File root)
+   {
+      this.root = root;
+   }
+
+   public boolean write(String path, byte[] content) throws IOException
+   {
+      File file = new File(root, path.replace('/', File.separatorChar));
+      file.getParentFile().mkdirs();
+      if(!Manifest.writeIfChanged(file, content))
+         return false;
+      System.out.println("Created " + file);
+      return true;
+   }
+
+   public void close()
+   {
+   }
+
+   public File getRoot()
+   {
+      return root;
+   }
+}
@@ -21,87 +21,153 @@
  */
 package org.jboss.beach.metadata.generator;
 
-import org.jboss.beach.metadata.generator.xsd.Annotated;
-import org.jboss.beach.metadata.generator.xsd.Attribute;
-import org.jboss.beach.metadata.generator.xsd.ComplexType;
-import org.jboss.beach.metadata.generator.xsd.Documentation;
-import org.jboss.beach.metadata.generator.xsd.Element;
-import org.jboss.beach.metadata.generator.xsd.ExplicitGroup;
-import org.jboss.beach.metadata.generator.xsd.Facet;
-import org.jboss.beach.metadata.generator.xsd.Group;
-import org.jboss.beach.metadata.generator.xsd.GroupRef;
-import org.jboss.beach.metadata.generator.xsd.Include;
-import org.jboss.beach.metadata.generator.xsd.NamedGroup;
-import org.jboss.beach.metadata.generator.xsd.OpenAttrs;
-import org.jboss.beach.metadata.generator.xsd.Pattern;
-import org.jboss.beach.metadata.generator.xsd.Schema;
-import org.jboss.beach.metadata.generator.xsd.SimpleContent;
-import org.jboss.beach.metadata.generator.xsd.SimpleRestrictionType;
-import org.jboss.beach.metadata.generator.xsd.SimpleType;
-import org.jboss.beach.metadata.generator.xsd.TopLevelComplexType;
-import org.jboss.beach.metadata.generator.xsd.TopLevelSimpleType;
-
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import org.jboss.beach.metadata.generator.model.AttributeDefinition;
+import org.jboss.beach.metadata.generator.model.ComplexTypeDefinition;
+import org.jboss.beach.metadata.generator.model.Definition;
+import org.jboss.beach.metadata.generator.model.ElementParticle;
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+import org.jboss.beach.metadata.generator.model.GroupDefinition;
+import org.jboss.beach.metadata.generator.model.GroupRefParticle;
+import org.jboss.beach.metadata.generator.model.Particle;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.jboss.beach.metadata.generator.model.SimpleContentDefinition;
+import org.jboss.beach.metadata.generator.model.SimpleTypeDefinition;
+
 import javax.xml.namespace.QName;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
  */
 public class Generator
 {
-   private static class Property
-   {
-      final String name;
-      final String comment;
-      final String type;
+   private String packageName;
+   private File destDir;
 
-      Property(String name, String comment, String type)
-      {
-         assert name != null : "name is null";
+   private SchemaReader reader = new StaxSchemaReader();
+   // null unless caching
+   private SchemaCache cache;
 
-         this.name = name;
-         this.comment = comment;
-         this.type = type;
-      }
-   }
+   private List<SchemaModel> generateSchemas = new ArrayList<SchemaModel>();
+   private Map<File, SchemaModel> knownSchemas = new HashMap<File, SchemaModel>();
+   private Map<SchemaModel, String> knownSchemaPackages = new HashMap<SchemaModel, String>();
+   // namespace -> file
+   private Map<String, File> catalog = new TreeMap<String, File>();
+   // namespace -> package, of the schemas which are located on demand
+   private Map<String, String> namespacePackages = new TreeMap<String, String>();
+   // the names of the elements or types to generate from, everything if empty
+   private Set<String> roots = new TreeSet<String>();
 
-   private String packageName;
-   private File destDir;
-   private File packageDir;
-   private Unmarshaller unmarshaller;
+   /**
+    * Built from knownSchemas on first resolve, dropped on every add.
+    */
+   private SchemaLocator locator;
+   private Map<QName, String> javaTypes = new ConcurrentHashMap<QName, String>();
+   // null for definitions which generate nothing
+   private Map<QName, TypeInfo> types = new HashMap<QName, TypeInfo>();
 
-   private List<Schema> generateSchemas = new ArrayList<Schema>();
-   private Map<String, Schema> knownSchemas = new HashMap<String, Schema>();
-   private Map<Schema, String> knownSchemaPackages = new HashMap<Schema, String>();
-   
-   public Generator(String packageName, File destDir) throws JAXBException
+   private Manifest manifest;
+   // null for the destination directory, which is the only one tracked by the manifest
+   private CodeSink sink;
+   private DirectorySink defaultSink;
+
+   private int parallelism = 1;
+   private ExecutorService executor;
+
+   private boolean writeSources = true;
+   private boolean generateImplementations;
+   private boolean generateParsers;
+   private boolean generateWriters;
+   private boolean generateCodecs;
+   private boolean generateImmutables;
+   private boolean generateMergers;
+   private boolean generateVisitors;
+   private boolean generateValidators;
+   private File compileOutput;
+   private String classpath;
+   // class name -> source, only kept when compiling
+   private Map<String, byte[]> sources;
+   // null unless measuring
+   private GeneratorMetrics metrics;
+
+   public Generator(String packageName, File destDir)
    {
       this.packageName = packageName;
       this.destDir = destDir;
 
-      String packageDirName = packageName.replace(".", File.separator);
-      packageDir = new File(destDir, packageDirName);
-      packageDir.mkdirs();
-      
-      JAXBContext jc = JAXBContext.newInstance("org.jboss.beach.metadata.generator.xsd");
-      unmarshaller = jc.createUnmarshaller();
+      manifest = new Manifest(packageName);
+      defaultSink = new DirectorySink(destDir);
+   }
+
+   public void add(String xsdFileName) throws IOException
+   {
+      add(new String[] { xsdFileName });
+   }
+
+   /**
+    * Add a number of schemas in one go, which allows them to be loaded concurrently.
+    * The outcome is the same as adding them one by one. The schemas they include
+    * or import are only loaded once a definition in them is needed.
+    */
+   public void add(String... xsdFileNames) throws IOException
+   {
+      File files[] = new File[xsdFileNames.length];
+      List<Callable<SchemaModel>> tasks = new ArrayList<Callable<SchemaModel>>();
+      for(int i = 0; i < xsdFileNames.length; i++)
+      {
+         files[i] = file(xsdFileNames[i]);
+         tasks.add(readTask(files[i]));
+      }
+      List<SchemaModel> schemas;
+      long start = start();
+      try
+      {
+         schemas = execute(tasks);
+      }
+      finally
+      {
+         shutdownExecutor();
+         stop(GeneratorMetrics.Phase.READ, start);
+      }
+
+      locator = null;
+      javaTypes.clear();
+      types.clear();
+      for(int i = 0; i < files.length; i++)
+      {
+         SchemaModel schema = schemas.get(i);
+         generateSchemas.add(schema);
+         knownSchemas.put(files[i], schema);
+         knownSchemaPackages.put(schema, packageName);
+         manifest.addSchema(files[i]);
+      }
    }
 
-   public void add(String xsdFileName) throws JAXBException
+   private static File file(String xsdFileName)
    {
       int i = xsdFileName.lastIndexOf(File.separator);
       String dirName = ".";
@@ -112,34 +178,39 @@ public class Generator
          xsdBaseName = xsdFileName.substring(i + 1);
       }
       File dir = new File(dirName);
-      File file = new File(dir, xsdBaseName);
-      Schema schema = (Schema) unmarshaller.unmarshal(file);
-      generateSchemas.add(schema);
-      knownSchemas.put(xsdBaseName, schema);
-      knownSchemaPackages.put(schema, packageName);
-      for(OpenAttrs attrs : schema.getIncludeOrImportOrRedefine())
-      {
-         if(attrs instanceof Include)
+      return new File(dir, xsdBaseName);
+   }
+
+   private Callable<SchemaModel> readTask(final File file)
+   {
+      return new Callable<SchemaModel>()
+      {
+         public SchemaModel call() throws IOException
          {
-            Include include = (Include) attrs;
-            String location = include.getSchemaLocation();
-            if(!knownSchemas.containsKey(location))
-               knownSchemas.put(location, (Schema) unmarshaller.unmarshal(new File(dir, location)));
-//            knownSchemaPackages.put(schema, packageName);
+            return read(file);
          }
-      }
+      };
+   }
+
+   private SchemaModel read(File file) throws IOException
+   {
+      long start = start();
+      SchemaModel schema = cache != null ? cache.read(file, reader) : reader.read(file);
+      if(metrics != null)
+         metrics.schemaRead(file.getName(), System.nanoTime() - start);
+      return schema;
    }
 
    private static String comma(List<String> list)
    {
-      String s = "";
+      StringBuilder s = new StringBuilder();
       for(int i = 0; i < list.size(); i++)
       {
-         s += list.get(i);
-         if(i < (list.size() - 1))
-            s += ", ";
+         if(i > 0)
+            s.append(", ");
+         s.append(list.get(i));
       }
-      return s;
+      return s.toString();
    }
 
    /**
@@ -155,40 +226,53 @@ public class Generator
       if(s == null)
          return null;
 
-      String r = prepend + "/**\n";
+      StringBuilder r = new StringBuilder(s.length() + 32);
+      r.append(prepend).append("/**\n");
       StringTokenizer st = new StringTokenizer(s, "\n");
       while(st.hasMoreTokens())
       {
-         r += prepend + " * " + st.nextToken().trim() + "\n";
+         r.append(prepend).append(" * ").append(st.nextToken().trim()).append("\n");
       }
-      r += prepend + " */";
-      return r;
+      r.append(prepend).append(" */");
+      return r.toString();
    }
 
-   private String determineJavaType(Schema schema, String name, SimpleContent content)
+   private String determineJavaType(SchemaModel schema, String name, SimpleContentDefinition content)
    {
-      if(content.getExtension() != null)
+      if(content.isExtension())
       {
-         if(content.getExtension().getAttributeOrAttributeGroup().size() > 0)
+         if(content.getAttributes().size() > 0)
          {
             // javaee:xsdStringType only has an id, lets ignore that
-            Attribute attr = (Attribute) content.getExtension().getAttributeOrAttributeGroup().get(0);
+            AttributeDefinition attr = content.getAttributes().get(0);
             if(attr.getName() != null && attr.getName().equals("id"))
-               return determineJavaType(content.getExtension().getBase());
+               return determineJavaType(content.getBase());
             return packageNamePrefix(schema) + javaIdentifier(name);
          }
-         return determineJavaType(content.getExtension().getBase());
+         return determineJavaType(content.getBase());
       }
       else
       {
-         SimpleRestrictionType restriction = content.getRestriction();
-         if(restriction.getFacets().size() > 0 && !(restriction.getFacets().get(0) instanceof Pattern))
+         if(content.getFacets().size() > 0 && !content.getFacets().get(0).isPattern())
             return packageNamePrefix(schema) + javaIdentifier(name);
-         return determineJavaType(content.getRestriction().getBase());
+         return determineJavaType(content.getBase());
       }
    }
 
    private String determineJavaType(QName name)
+   {
+      String javaType = javaTypes.get(name);
+      if(metrics != null)
+         metrics.add(javaType == null ? GeneratorMetrics.Counter.RESOLVER_MISSES : GeneratorMetrics.Counter.RESOLVER_HITS, 1);
+      if(javaType == null)
+      {
+         javaType = resolveJavaType(name);
+         javaTypes.put(name, javaType);
+      }
+      return javaType;
+   }
+
+   private String resolveJavaType(QName name)
    {
       String namespaceURI = name.getNamespaceURI();
       if(namespaceURI.equals("http://www.w3.org/2001/XMLSchema"))
@@ -196,8 +280,11 @@ public class Generator
          String localPart = name.getLocalPart();
          if(localPart.equals("boolean"))
             return "Boolean";
-         if(localPart.equals("integer") || localPart.equals("nonNegativeInteger"))
+         if(localPart.equals("integer"))
             return "Integer";
+         // unsigned, so an int is not enough
+         if(localPart.equals("nonNegativeInteger"))
+            return "Long";
          if(localPart.equals("string") || localPart.equals("token"))
             return "String";
          if(localPart.equals("anyURI"))
@@ -213,307 +300,1181 @@ public class Generator
          if(localPart.equals("generic-booleanType"))
             return "Boolean";
       }
-      for(Schema schema : knownSchemas.values())
+      SchemaIndex.Entry entry = locator().get(name);
+      if(entry == null)
+         throw new RuntimeException("NYI " + name);
+      SchemaModel schema = entry.schema;
+      Definition definition = entry.definition;
+      if(definition instanceof GroupDefinition)
+      {
+         return packageNamePrefix(schema) + javaIdentifier(definition.getName());
+      }
+      else if(definition instanceof ComplexTypeDefinition)
+      {
+         ComplexTypeDefinition type = (ComplexTypeDefinition) definition;
+         if(type.getSimpleContent() != null)
+         {
+            return determineJavaType(schema, type.getName(), type.getSimpleContent());
+         }
+         if(type.getParticles() != null)
+         {
+            return packageNamePrefix(schema)  + javaIdentifier(type.getName());
+         }
+         throw new RuntimeException("NYI " + name);
+      }
+      else
+      {
+         SimpleTypeDefinition type = (SimpleTypeDefinition) definition;
+         if(type.getRestrictionBase() != null)
+            return determineJavaType(type.getRestrictionBase());
+         if(type.getListItemType() != null)
+            return "java.util.List<" + determineJavaType(type.getListItemType()) + ">";
+         // TODO: handle it properly
+         return URI.class.getName();
+      }
+   }
+
+   /**
+    * Resolve everything to generate from scratch, up front, so emitting only reads.
+    */
+   List<TypeInfo> resolve()
+   {
+      long start = start();
+      locator = null;
+      javaTypes.clear();
+      types.clear();
+      String javaTypesKey = javaTypesKey();
+      Map<QName, String> cachedJavaTypes = javaTypesKey != null ? cache.loadJavaTypes(javaTypesKey, reader) : null;
+      if(cachedJavaTypes != null)
+         javaTypes.putAll(cachedJavaTypes);
+      Set<QName> reachable = roots.isEmpty() ? null : reachable();
+      List<TypeInfo> generateTypes = new ArrayList<TypeInfo>();
+      for(SchemaModel schema : generateSchemas)
       {
-         if(!namespaceURI.equals(schema.getTargetNamespace()))
+         for(Definition definition : schema.getDefinitions())
          {
+            if(reachable != null && !reachable.contains(new QName(schema.getTargetNamespace(), definition.getName())))
+               continue;
+            TypeInfo type = typeInfo(schema, definition);
+            if(type != null)
+               generateTypes.add(type);
+         }
+      }
+      if(javaTypesKey != null && cachedJavaTypes == null)
+         cache.storeJavaTypes(javaTypesKey, javaTypes, locator().getLocated());
+      stop(GeneratorMetrics.Phase.RESOLVE, start);
+      return generateTypes;
+   }
+
+   /**
+    * Walk the element types and group references from the roots.
+    *
+    * @return the names of all groups and types which are reachable from the roots
+    */
+   private Set<QName> reachable()
+   {
+      LinkedList<TypeInfo> queue = new LinkedList<TypeInfo>();
+      for(String root : roots)
+      {
+         TypeInfo type = root(root);
+         if(type != null)
+            queue.add(type);
+      }
+      Set<QName> reachable = new HashSet<QName>();
+      while(!queue.isEmpty())
+      {
+         TypeInfo type = queue.removeFirst();
+         if(!reachable.add(type.name))
             continue;
+         for(PropertyInfo property : type.properties)
+         {
+            if(property.group != null)
+               queue.add(property.group);
+            else if(property.valueType != null)
+               queue.add(property.valueType);
          }
-         for(OpenAttrs attrs : schema.getSimpleTypeOrComplexTypeOrGroup())
+      }
+      return reachable;
+   }
+
+   /**
+    * @param name the name of a top level element or, if there is no such element, of a group or type
+    * @return what to generate for the root or null if it's a type which generates nothing
+    */
+   private TypeInfo root(String name)
+   {
+      for(SchemaModel schema : generateSchemas)
+      {
+         for(ElementParticle element : schema.getElements())
          {
-            if(attrs instanceof NamedGroup)
+            if(element.getName().equals(name))
             {
-               //throw new RuntimeException("NYI");
-               NamedGroup group = (NamedGroup) attrs;
-               if(!group.getName().equals(name.getLocalPart()))
-                  continue;
-               return packageNamePrefix(schema) + javaIdentifier(group.getName());
-            }
-            else if(attrs instanceof ComplexType)
-            {
-               ComplexType type = (ComplexType) attrs;
-               if(!type.getName().equals(name.getLocalPart()))
-                  continue;
-               if(type.getSimpleContent() != null)
-               {
-                  return determineJavaType(schema, type.getName(), type.getSimpleContent());
-               }
-               if(type.getSequence() != null)
-               {
-                  //generateInterface(schemas, type.getName(), type.getSequence());
-                  return packageNamePrefix(schema)  + javaIdentifier(type.getName());
-               }
-               throw new RuntimeException("NYI " + name);
+               SchemaIndex.Entry entry = locator().get(element.getType());
+               return entry != null ? typeInfo(entry.schema, entry.definition) : null;
             }
-            else if(attrs instanceof SimpleType)
+         }
+      }
+      for(SchemaModel schema : generateSchemas)
+      {
+         for(Definition definition : schema.getDefinitions())
+         {
+            if(definition.getName().equals(name))
+               return typeInfo(schema, definition);
+         }
+      }
+      throw new IllegalArgumentException("No element, group or type named " + name + " in " + generateSchemas);
+   }
+
+   private SchemaLocator locator()
+   {
+      if(locator == null)
+      {
+         locator = new SchemaLocator(knownSchemas, catalog, new SchemaLocator.Loader()
+         {
+            public SchemaModel load(File file) throws IOException
             {
-               SimpleType type = (SimpleType) attrs;
-               if(!type.getName().equals(name.getLocalPart()))
-                  continue;
-               if(type.getRestriction() != null)
-                  return determineJavaType(type.getRestriction().getBase());
-               if(type.getList() != null)
-                  return "java.util.List<" + determineJavaType(type.getList().getItemType()) + ">";
-               // TODO: handle it properly
-               return URI.class.getName();
+               SchemaModel schema = read(file);
+               String pkg = namespacePackages.get(schema.getTargetNamespace());
+               if(pkg != null)
+                  knownSchemaPackages.put(schema, pkg);
+               manifest.addInput(file);
+               return schema;
             }
-         }
+         });
       }
-      throw new RuntimeException("NYI " + name);
+      return locator;
    }
 
-   private static String documentation(Annotated annotated)
+   /**
+    * The Java types depend on all known schemas and the package they end up in.
+    * The schemas which are located on demand are checked by the cache itself.
+    *
+    * @return the key of the Java types in the cache or null if they can't be cached
+    */
+   private String javaTypesKey()
    {
-      if(annotated.getAnnotation() == null)
+      if(cache == null)
          return null;
-      Documentation doc = (Documentation) annotated.getAnnotation().getAppinfoOrDocumentation().get(0);
-      return (String) doc.getContent().get(0);
+      List<String> parts = new ArrayList<String>();
+      for(Map.Entry<File, SchemaModel> entry : new TreeMap<File, SchemaModel>(knownSchemas).entrySet())
+      {
+         String key = cache.keyOf(entry.getValue());
+         if(key == null)
+            return null;
+         parts.add(entry.getKey().getPath() + "=" + key + "=" + knownSchemaPackages.get(entry.getValue()));
+      }
+      for(Map.Entry<String, File> entry : catalog.entrySet())
+         parts.add("catalog:" + entry.getKey() + "=" + entry.getValue().getPath());
+      for(Map.Entry<String, String> entry : namespacePackages.entrySet())
+         parts.add("package:" + entry.getKey() + "=" + entry.getValue());
+      return cache.key(parts.toArray(new String[parts.size()]));
    }
 
    public void generate() throws IOException
    {
-      for(Schema schema : generateSchemas)
+      List<TypeInfo> generateTypes = resolve();
+
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for(final TypeInfo type : generateTypes)
       {
-         for(OpenAttrs attrs : schema.getSimpleTypeOrComplexTypeOrGroup())
+         tasks.add(new Callable<Void>()
          {
-            if(attrs instanceof NamedGroup)
+            public Void call() throws IOException
             {
-               NamedGroup group = (NamedGroup) attrs;
-               generateInterface(group.getName(), documentation(group), (ExplicitGroup) ((JAXBElement) group.getParticle().get(0)).getValue());
+               generate(type);
+               return null;
             }
-            else if(attrs instanceof TopLevelComplexType)
+         });
+      }
+      if(generateValidators)
+      {
+         final ValidatorEmitter emitter = new ValidatorEmitter(packageName, generatesImplementations(), generateTypes);
+         for(final TypeInfo type : emitter.getTypes())
+         {
+            tasks.add(new Callable<Void>()
             {
-               TopLevelComplexType type = (TopLevelComplexType) attrs;
-               //System.out.println(type.getName());
-               if(type.getName().equals("emptyType"))
-               {
-                  // what did you expect?
-                  continue;
-               }
-               else if(type.getName().equals("generic-booleanType"))
+               public Void call() throws IOException
                {
-                  // TODO:
-                  continue;
+                  write(ValidatorEmitter.className(type), emitter.emit(type));
+                  return null;
                }
-               if(type.getSimpleContent() != null)
-                  generateInterface(type.getName(), documentation(type), type.getSimpleContent());
-               else
-                  generateInterface(type.getName(), documentation(type), type.getSequence());
-            }
-            else if(attrs instanceof TopLevelSimpleType)
+            });
+         }
+      }
+      if(generateVisitors)
+      {
+         final VisitorEmitter emitter = new VisitorEmitter(packageName, generatesImplementations(), generateTypes);
+         tasks.add(new Callable<Void>()
+         {
+            public Void call() throws IOException
             {
-               TopLevelSimpleType type = (TopLevelSimpleType) attrs;
-               // TODO: ignore for now
-               //throw new IllegalStateException(type.getName());
+               write(VisitorEmitter.VISITOR, emitter.emitVisitor());
+               write(VisitorEmitter.ABSTRACT_VISITOR, emitter.emitAbstractVisitor());
+               write(VisitorEmitter.TRAVERSAL, emitter.emitTraversal());
+               return null;
             }
-            else
-               throw new IllegalStateException("Can't handle " + attrs.getClass());
-         }
+         });
+      }
+      if(compileOutput != null)
+         sources = new ConcurrentHashMap<String, byte[]>();
+      long start = start();
+      try
+      {
+         execute(tasks);
+      }
+      finally
+      {
+         shutdownExecutor();
+         stop(GeneratorMetrics.Phase.EMIT, start);
+      }
+
+      if(compileOutput != null)
+      {
+         start = start();
+         InMemoryCompiler.compile(sources, classpath, compileOutput);
+         sources = null;
+         stop(GeneratorMetrics.Phase.COMPILE, start);
+      }
+
+      if(writeSources)
+         closeSink();
+
+      if(writeSources && sink == null)
+      {
+         start = start();
+         Manifest previous = Manifest.load(destDir);
+         if(previous != null)
+            manifest.deleteStaleOutputs(previous, destDir);
+         manifest.setOptions(options());
+         manifest.store(destDir);
+         stop(GeneratorMetrics.Phase.MANIFEST, start);
       }
    }
-   
-   private void generateInterface(String name, String documentation, Group group) throws IOException
+
+   private void generate(TypeInfo type) throws IOException
    {
-      assert group != null : "group is null on " + name;
+      if(metrics != null)
+      {
+         metrics.add(GeneratorMetrics.Counter.TYPES, 1);
+         metrics.add(GeneratorMetrics.Counter.PROPERTIES, type.properties.size());
+      }
+      switch(type.kind)
+      {
+         case GROUP:
+         case ELEMENTS:
+            generateInterface(type);
+            break;
+         case SIMPLE_CONTENT:
+            generateSimpleContentInterface(type);
+            break;
+         case ENUM:
+            generateEnum(type);
+            break;
+      }
+      if(type.kind == TypeInfo.Kind.ENUM)
+         return;
+      if(generatesImplementations() && type.kind != TypeInfo.Kind.GROUP)
+         write(ImplementationEmitter.className(type), new ImplementationEmitter(packageName, generateImmutables).emit(type));
+      if(generateImmutables && type.kind != TypeInfo.Kind.GROUP)
+         write(ImmutableEmitter.className(type), new ImmutableEmitter(packageName).emit(type));
+      if(generateParsers)
+         write(ParserEmitter.className(type), new ParserEmitter(packageName).emit(type));
+      if(generateWriters)
+         write(WriterEmitter.className(type), new WriterEmitter(packageName, generatesImplementations()).emit(type));
+      if(generateCodecs && type.kind != TypeInfo.Kind.GROUP)
+         write(CodecEmitter.className(type), new CodecEmitter(packageName).emit(type));
+      if(generateMergers && type.kind == TypeInfo.Kind.ELEMENTS)
+         write(MergerEmitter.className(type), new MergerEmitter(packageName).emit(type));
+   }
 
-      List<String> extensions = new ArrayList<String>();
-      List<Property> properties = new ArrayList<Property>();
+   /**
+    * The parsers, codecs and mergers fill the implementations, which are the builders of the immutables.
+    */
+   private boolean generatesImplementations()
+   {
+      return generateImplementations || generateParsers || generateCodecs || generateImmutables || generateMergers;
+   }
+
+   private TypeInfo typeInfo(QName name)
+   {
+      SchemaIndex.Entry entry = locator().get(name);
+      if(entry == null)
+         throw new RuntimeException("NYI " + name);
+      return typeInfo(entry.schema, entry.definition);
+   }
+
+   /**
+    * @return what to generate for the definition or null if there is nothing to generate
+    */
+   private TypeInfo typeInfo(SchemaModel schema, Definition definition)
+   {
+      QName name = new QName(schema.getTargetNamespace(), definition.getName());
+      if(types.containsKey(name))
+         return types.get(name);
+      TypeInfo type = createTypeInfo(name, definition);
+      types.put(name, type);
+      return type;
+   }
 
-      for(Object p : group.getParticle())
+   private TypeInfo createTypeInfo(QName name, Definition definition)
+   {
+      String identifier = javaIdentifier(definition.getName());
+      if(definition instanceof GroupDefinition)
       {
-         Object value = ((JAXBElement) p).getValue();
-         if(value instanceof ExplicitGroup)
+         GroupDefinition group = (GroupDefinition) definition;
+         TypeInfo type = new TypeInfo(TypeInfo.Kind.GROUP, name, identifier, group.getDocumentation());
+         types.put(name, type);
+         addProperties(type, group.getParticles());
+         return type;
+      }
+      else if(definition instanceof ComplexTypeDefinition)
+      {
+         ComplexTypeDefinition complexType = (ComplexTypeDefinition) definition;
+         //System.out.println(type.getName());
+         if(complexType.getName().equals("emptyType"))
+         {
+            // what did you expect?
+            return null;
+         }
+         else if(complexType.getName().equals("generic-booleanType"))
          {
-            ExplicitGroup g = (ExplicitGroup) value;
-            for(Object p2 : g.getParticle())
+            // TODO:
+            return null;
+         }
+         SimpleContentDefinition content = complexType.getSimpleContent();
+         if(content == null)
+         {
+            assert complexType.getParticles() != null : "particles is null on " + name;
+            TypeInfo type = new TypeInfo(TypeInfo.Kind.ELEMENTS, name, identifier, complexType.getDocumentation());
+            // before the properties, a type may contain itself
+            types.put(name, type);
+            addProperties(type, complexType.getParticles());
+            return type;
+         }
+
+         // hmm, duplicates logic in determineJavaType
+         if(content.isExtension())
+         {
+            if(content.getAttributes().size() == 0)
+               return null;
+
+            // javaee:xsdStringType only has an id, lets ignore that
+            AttributeDefinition attr = content.getAttributes().get(0);
+            if(attr.getName() != null && attr.getName().equals("id"))
+               return null;
+
+            // TODO: it's probably descriptionType
+            TypeInfo type = new TypeInfo(TypeInfo.Kind.SIMPLE_CONTENT, name, identifier, complexType.getDocumentation());
+            for(AttributeDefinition a : content.getAttributes())
             {
-               Object v2 = ((JAXBElement) p2).getValue();
-               //System.out.println("  " + v2);
-               if(v2 instanceof Element)
-               {
-                  Element element = (Element) v2;
-                  boolean isCollection = element.getMaxOccurs().equals("unbounded");
-                  String type = determineJavaType(element.getType());
-                  if(isCollection)
-                     type = "java.util.List<" + type + ">";
-                  properties.add(new Property(element.getName(), comment("   ", documentation(element)), type));
-               }
-               else if(v2 instanceof GroupRef)
+               if(a.getName() != null)
+                  type.properties.add(PropertyInfo.attribute(a.getName(), "", a.getType(), a.isRequired()));
+               else
+                  type.properties.add(PropertyInfo.attribute(a.getRef().getLocalPart(), a.getRef().getNamespaceURI(), a.getType(), a.isRequired()));
+            }
+            return type;
+         }
+
+         if(content.getFacets().size() == 0)
+            return null;
+
+         if(content.getFacets().get(0).isPattern())
+            return null;
+
+         TypeInfo type = new TypeInfo(TypeInfo.Kind.ENUM, name, identifier, complexType.getDocumentation());
+         for(FacetDefinition facet : content.getFacets())
+            type.facets.add(facet.getValue());
+         return type;
+      }
+      else if(definition instanceof SimpleTypeDefinition)
+      {
+         // TODO: ignore for now
+         //throw new IllegalStateException(type.getName());
+         return null;
+      }
+      else
+         throw new IllegalStateException("Can't handle " + definition);
+   }
+
+   /**
+    * Collect the facets along the restrictions of a simple type. Those of every step apply,
+    * except for the enumerations where the most derived step wins. The patterns of a single
+    * step are alternatives, so they are joined into one.
+    */
+   private void collectFacets(QName name, List<FacetDefinition> facets)
+   {
+      boolean enumerated = false;
+      while(name != null && !name.getNamespaceURI().equals("http://www.w3.org/2001/XMLSchema"))
+      {
+         SchemaIndex.Entry entry = locator().get(name);
+         if(entry == null)
+            return;
+         List<FacetDefinition> step;
+         if(entry.definition instanceof SimpleTypeDefinition)
+         {
+            SimpleTypeDefinition type = (SimpleTypeDefinition) entry.definition;
+            step = type.getFacets();
+            name = type.getRestrictionBase();
+         }
+         else if(entry.definition instanceof ComplexTypeDefinition && ((ComplexTypeDefinition) entry.definition).getSimpleContent() != null)
+         {
+            SimpleContentDefinition content = ((ComplexTypeDefinition) entry.definition).getSimpleContent();
+            step = content.isExtension() ? Collections.<FacetDefinition>emptyList() : content.getFacets();
+            name = content.getBase();
+         }
+         else
+            return;
+         List<String> patterns = new ArrayList<String>();
+         boolean stepEnumerated = false;
+         for(FacetDefinition facet : step)
+         {
+            if(facet.isPattern())
+               patterns.add(facet.getValue());
+            else if(facet.getKind().equals("enumeration"))
+            {
+               if(!enumerated)
                {
-                  GroupRef ref = (GroupRef) v2;
-                  String type = determineJavaType(ref.getRef());
-                  //assert type.startsWith(packageName) : type + " does not start with " + packageName + " " + name;
-                  extensions.add(type);
+                  facets.add(facet);
+                  stepEnumerated = true;
                }
-               else
-                  throw new IllegalStateException(v2.toString());
             }
+            else
+               facets.add(facet);
          }
-         else if(value instanceof GroupRef)
+         if(patterns.size() == 1)
+            facets.add(new FacetDefinition("pattern", patterns.get(0)));
+         else if(patterns.size() > 1)
          {
-            GroupRef ref = (GroupRef) value;
-            String type = determineJavaType(ref.getRef());
-            //assert type.startsWith(packageName) : type + " does not start with " + packageName + " " + name;
-            extensions.add(type);
+            StringBuilder pattern = new StringBuilder();
+            for(String p : patterns)
+               pattern.append(pattern.length() > 0 ? "|(" : "(").append(p).append(')');
+            facets.add(new FacetDefinition("pattern", pattern.toString()));
          }
-         else if(value instanceof Element)
+         enumerated |= stepEnumerated;
+      }
+   }
+
+   private void addProperties(TypeInfo type, List<Particle> particles)
+   {
+      for(Particle particle : particles)
+      {
+         if(particle instanceof ElementParticle)
          {
-            Element element = (Element) value;
-            boolean isCollection = element.getMaxOccurs().equals("unbounded");
-            String type = determineJavaType(element.getType());
-            if(isCollection)
-               type = "java.util.List<" + type + ">";
-            properties.add(new Property(element.getName(), comment("   ", documentation(element)), type));
+            ElementParticle element = (ElementParticle) particle;
+            String javaType = determineJavaType(element.getType());
+            SchemaIndex.Entry entry = locator().get(element.getType());
+            TypeInfo valueType = entry != null ? typeInfo(entry.schema, entry.definition) : null;
+            PropertyInfo property = PropertyInfo.element(element.getName(), comment("   ", element.getDocumentation()), javaType, element.isUnbounded(), element.getMinOccurs(), element.getType(), valueType);
+            if(generateValidators)
+               collectFacets(element.getType(), property.facets);
+            type.properties.add(property);
          }
          else
-            throw new IllegalStateException(value.toString() + " on " + name);
+         {
+            GroupRefParticle ref = (GroupRefParticle) particle;
+            String javaType = determineJavaType(ref.getRef());
+            //assert type.startsWith(packageName) : type + " does not start with " + packageName + " " + name;
+            type.properties.add(PropertyInfo.group(javaType, typeInfo(ref.getRef())));
+         }
+      }
+   }
+
+   /**
+    * Run the tasks on the caller thread or, if parallelism allows, on the executor.
+    *
+    * @return the results in task order
+    */
+   private <T> List<T> execute(List<Callable<T>> tasks) throws IOException
+   {
+      List<T> results = new ArrayList<T>(tasks.size());
+      if(parallelism == 1 || tasks.size() < 2)
+      {
+         for(Callable<T> task : tasks)
+         {
+            try
+            {
+               results.add(task.call());
+            }
+            catch(Exception e)
+            {
+               throw unwrap(e);
+            }
+         }
+         return results;
+      }
+      try
+      {
+         for(Future<T> future : executor().invokeAll(tasks))
+         {
+            try
+            {
+               results.add(future.get());
+            }
+            catch(ExecutionException e)
+            {
+               throw unwrap(e.getCause());
+            }
+         }
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException();
+      }
+      return results;
+   }
+
+   private ExecutorService executor()
+   {
+      if(executor == null)
+      {
+         int n = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+         executor = Executors.newFixedThreadPool(n, new ThreadFactory()
+         {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+               Thread t = new Thread(r, "generator-" + count.incrementAndGet());
+               t.setDaemon(true);
+               return t;
+            }
+         });
+      }
+      return executor;
+   }
+
+   /**
+    * @return the start of a phase to measure, if measuring
+    */
+   private long start()
+   {
+      return metrics != null ? System.nanoTime() : 0;
+   }
+
+   private void stop(GeneratorMetrics.Phase phase, long start)
+   {
+      if(metrics != null)
+         metrics.add(phase, System.nanoTime() - start);
+   }
+
+   /**
+    * The threads only live as long as a stage, so a generator can simply be dropped.
+    */
+   private void shutdownExecutor()
+   {
+      if(executor != null)
+      {
+         executor.shutdown();
+         executor = null;
+      }
+   }
+
+   private static IOException unwrap(Throwable t)
+   {
+      if(t instanceof IOException)
+         return (IOException) t;
+      if(t instanceof RuntimeException)
+         throw (RuntimeException) t;
+      if(t instanceof Error)
+         throw (Error) t;
+      return new IOException(t);
+   }
+
+   private void generateInterface(TypeInfo type) throws IOException
+   {
+      List<String> extensions = new ArrayList<String>();
+      for(PropertyInfo property : type.properties)
+      {
+         if(property.group != null)
+            extensions.add(property.type);
       }
 
-      String identifier = javaIdentifier(name);
-      File source = new File(packageDir, identifier + ".java");
-      PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(source)));
+      CodeWriter out = CodeWriter.open();
 
       out.println("package " + packageName + ";");
       out.println();
-      if(documentation != null)
-         out.println(comment(documentation));
-      out.println("public interface " + javaIdentifier(name) + (extensions.size() > 0 ? " extends " + comma(extensions) : ""));
+      if(type.documentation != null)
+         out.println(comment(type.documentation));
+      out.println("public interface " + type.identifier + (extensions.size() > 0 ? " extends " + comma(extensions) : ""));
       out.println("{");
-      for(Property property : properties)
+      for(PropertyInfo property : type.properties)
       {
-         String s = javaIdentifier(property.name);
+         if(property.group != null)
+            continue;
+         String s = property.getIdentifier();
          if(property.comment != null)
             out.println(property.comment);
          out.println("   " + property.type + " get" + s + "();");
-         out.println("   void set" + s + "(" + property.type + " " + normalize(property.name) + ");");
+         out.println("   void set" + s + "(" + property.type + " " + property.getVariable() + ");");
          out.println();
       }
       out.println("}");
 
-      out.flush();
-      out.close();
-      System.out.println("Created " + source);
+      write(type.identifier, out.finish());
    }
 
-   private void generateInterface(String name, String documentation, SimpleContent content) throws IOException
+   private void generateSimpleContentInterface(TypeInfo type) throws IOException
    {
-      // hmm, duplicates logic in determineJavaType
+      CodeWriter out = CodeWriter.open();
 
-      if(content.getExtension() != null)
+      out.println("package " + packageName + ";");
+      out.println();
+      if(type.documentation != null)
+         out.println(comment(type.documentation));
+      out.println("public interface " + type.identifier);
+      out.println("{");
+      out.println("   String getValue();");
+      out.println("   void setValue(String value);");
+      for(PropertyInfo property : type.properties)
       {
-         if(content.getExtension().getAttributeOrAttributeGroup().size() == 0)
-            return;
+         String s = property.getIdentifier();
+         out.println("   String get" + s + "();");
+         out.println("   void set" + s + "(String " + property.getVariable() + ");");
+      }
+      out.println("}");
 
-         // javaee:xsdStringType only has an id, lets ignore that
-         Attribute attr = (Attribute) content.getExtension().getAttributeOrAttributeGroup().get(0);
-         if(attr.getName() != null && attr.getName().equals("id"))
-            return;
+      write(type.identifier, out.finish());
+   }
 
-         // TODO: it's probably descriptionType
-         String identifier = javaIdentifier(name);
-         File source = new File(packageDir, identifier + ".java");
-         PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(source)));
+   private void generateEnum(TypeInfo type) throws IOException
+   {
+      CodeWriter out = CodeWriter.open();
 
-         out.println("package " + packageName + ";");
-         out.println();
-         if(documentation != null)
-            out.println(comment(documentation));
-         out.println("public interface " + identifier);
-         out.println("{");
-         out.println("   String getValue();");
-         out.println("   void setValue(String value);");
-         for(Annotated element : content.getExtension().getAttributeOrAttributeGroup())
+      out.println("package " + packageName + ";");
+      out.println();
+      if(type.documentation != null)
+         out.println(comment(type.documentation));
+      out.println("public enum " + type.identifier);
+      out.println("{");
+      List<String> constants = enumConstants(type.facets);
+      // literal hash -> indexes of the facets
+      Map<Integer, List<Integer>> cases = new TreeMap<Integer, List<Integer>>();
+      for(int i = 0; i < type.facets.size(); i++)
+      {
+         String facet = type.facets.get(i);
+         out.println("   " + constants.get(i) + "(" + literal(facet) + ")" + (i < type.facets.size() - 1 ? "," : ";"));
+         Integer hash = facet.hashCode();
+         List<Integer> indexes = cases.get(hash);
+         if(indexes == null)
          {
-            Attribute a = (Attribute) element;
-            String n = a.getName();
-            if(n == null)
-               n = a.getRef().getLocalPart();
-            String s = javaIdentifier(n);
-            out.println("   String get" + s + "();");
-            out.println("   void set" + s + "(String " + normalize(n) + ");");
+            indexes = new ArrayList<Integer>();
+            cases.put(hash, indexes);
          }
-         out.println("}");
-
-         out.flush();
-         out.close();
-         System.out.println("Created " + source);
-         return;
+         indexes.add(i);
+      }
+      if(type.facets.isEmpty())
+         out.println("   ;");
+      out.println();
+      out.println("   private final String xml;");
+      out.println();
+      out.println("   private " + type.identifier + "(String xml)");
+      out.println("   {");
+      out.println("      this.xml = xml;");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * @return the literal of this value in XML");
+      out.println("    */");
+      out.println("   public String xmlValue()");
+      out.println("   {");
+      out.println("      return xml;");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * @return the value of the XML literal or null if there is none");
+      out.println("    */");
+      out.println("   public static " + type.identifier + " fromXml(String s)");
+      out.println("   {");
+      out.println("      if(s == null)");
+      out.println("         return null;");
+      if(!cases.isEmpty())
+      {
+         out.println("      switch(s.hashCode())");
+         out.println("      {");
+         for(Map.Entry<Integer, List<Integer>> entry : cases.entrySet())
+         {
+            out.println("         case " + entry.getKey() + ":");
+            for(Integer i : entry.getValue())
+            {
+               out.println("            if(s.equals(" + literal(type.facets.get(i)) + "))");
+               out.println("               return " + constants.get(i) + ";");
+            }
+            out.println("            break;");
+         }
+         out.println("      }");
       }
+      out.println("      return null;");
+      out.println("   }");
+      out.println("}");
 
-      SimpleRestrictionType restriction = content.getRestriction();
-      if(restriction.getFacets().size() == 0)
-         return;
+      write(type.identifier, out.finish());
+   }
 
-      if(restriction.getFacets().get(0) instanceof Pattern)
-         return;
+   /**
+    * @return the Java string literal of s
+    */
+   static String literal(String s)
+   {
+      StringBuilder sb = new StringBuilder(s.length() + 2);
+      sb.append('"');
+      for(int i = 0; i < s.length(); i++)
+      {
+         char c = s.charAt(i);
+         if(c == '"' || c == '\\')
+            sb.append('\\').append(c);
+         else if(c < ' ' || c > '~')
+            sb.append(String.format("\\u%04x", (int) c));
+         else
+            sb.append(c);
+      }
+      return sb.append('"').toString();
+   }
 
-      String identifier = javaIdentifier(name);
-      File source = new File(packageDir, identifier + ".java");
-      PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(source)));
+   private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("abstract", "assert", "boolean",
+      "break", "byte", "case", "catch", "char", "class", "const", "continue", "default", "do", "double", "else", "enum",
+      "extends", "false", "final", "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+      "interface", "long", "native", "new", "null", "package", "private", "protected", "public", "return", "short",
+      "static", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws", "transient", "true", "try",
+      "void", "volatile", "while"));
 
-      out.println("package " + packageName + ";");
-      out.println();
-      if(documentation != null)
-         out.println(comment(documentation));
-      out.println("public enum " + identifier);
-      out.println("{");
-      for(Object element : restriction.getFacets())
+   /**
+    * A facet which is a valid identifier is used as is, anything else is mangled
+    * into one. The XML literal itself is kept by the constant.
+    */
+   private static List<String> enumConstants(List<String> facets)
+   {
+      Set<String> used = new HashSet<String>();
+      List<String> constants = new ArrayList<String>(facets.size());
+      for(String facet : facets)
       {
-         Facet facet = (Facet) ((JAXBElement) element).getValue();
-         out.println("   " + facet.getValue() + ",");
+         StringBuilder sb = new StringBuilder(facet.length() + 1);
+         for(int i = 0; i < facet.length(); i++)
+         {
+            char c = facet.charAt(i);
+            sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+         }
+         if(sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0)) || KEYWORDS.contains(sb.toString()))
+            sb.insert(0, '_');
+         while(!used.add(sb.toString()))
+            sb.append('_');
+         constants.add(sb.toString());
       }
-      out.println("}");
-
-      out.flush();
-      out.close();
-      System.out.println("Created " + source);
+      return constants;
    }
    
-   public static void generate(String destDirName, String destPkg, String... xsdFileNames) throws IOException
+   private void write(String identifier, byte[] content) throws IOException
    {
-      File destDir = new File(destDirName);
-      destDir.mkdirs();
+      if(sources != null)
+         sources.put(packageName + "." + identifier, content);
+      if(!writeSources)
+         return;
+      String path = packageName.replace('.', '/') + "/" + identifier + ".java";
+      if(sink == null)
+         manifest.addOutput(path, Manifest.digest(content));
+      if(sink().write(path, content))
+      {
+         if(metrics != null)
+         {
+            metrics.add(GeneratorMetrics.Counter.FILES_WRITTEN, 1);
+            metrics.add(GeneratorMetrics.Counter.BYTES_WRITTEN, content.length);
+         }
+      }
+      else if(metrics != null)
+         metrics.add(GeneratorMetrics.Counter.FILES_UNCHANGED, 1);
+   }
 
+   private CodeSink sink()
+   {
+      if(sink == null)
+         return defaultSink;
+      return sink;
+   }
+
+   private void closeSink() throws IOException
+   {
+      long start = start();
       try
       {
-         Generator generator = new Generator(destPkg, destDir);
-         for(String s : xsdFileNames)
-            generator.add(s);
-         generator.generate();
+         sink().close();
+      }
+      finally
+      {
+         stop(GeneratorMetrics.Phase.EMIT, start);
       }
-      catch(JAXBException e)
+   }
+
+   /**
+    * Generate the given schemas, unless the previous run already did exactly that.
+    */
+   public void run(String... xsdFileNames) throws IOException
+   {
+      // compilation is not tracked, so only a plain source run can be skipped
+      long start = start();
+      Manifest previous = compileOutput == null && writeSources && sink == null ? Manifest.load(destDir) : null;
+      boolean upToDate = previous != null && previous.isUpToDate(destDir, packageName, options(), xsdFileNames);
+      stop(GeneratorMetrics.Phase.MANIFEST, start);
+      if(upToDate)
       {
-         throw new IOException(e);
+         System.out.println("Nothing to generate, " + destDir + " is up to date");
+         return;
       }
+
+      add(xsdFileNames);
+      generate();
    }
 
-   private static String javaIdentifier(String s)
+   /**
+    * @return the options which affect what is generated, as recorded in the manifest
+    */
+   private String options()
+   {
+      List<String> options = new ArrayList<String>();
+      if(generateImplementations)
+         options.add("implementations");
+      if(generateParsers)
+         options.add("parsers");
+      if(generateWriters)
+         options.add("writers");
+      if(generateCodecs)
+         options.add("codecs");
+      if(generateImmutables)
+         options.add("immutables");
+      if(generateMergers)
+         options.add("mergers");
+      if(generateVisitors)
+         options.add("visitors");
+      if(generateValidators)
+         options.add("validators");
+      for(String root : roots)
+         options.add("root:" + root);
+      for(Map.Entry<String, File> entry : catalog.entrySet())
+         options.add("catalog:" + entry.getKey() + "=" + entry.getValue().getPath());
+      for(Map.Entry<String, String> entry : namespacePackages.entrySet())
+         options.add("package:" + entry.getKey() + "=" + entry.getValue());
+      return comma(options);
+   }
+
+   /**
+    * @param classpath the class path to compile the generated sources against, by default java.class.path
+    */
+   public void setClasspath(String classpath)
+   {
+      this.classpath = classpath;
+   }
+
+   /**
+    * Compile the generated sources in process, straight from memory.
+    *
+    * @param output the directory or, if the name ends with .jar, jar file to compile to or null to not compile
+    */
+   public void setCompileOutput(File output)
+   {
+      this.compileOutput = output;
+   }
+
+   /**
+    * @param reader the front end used to read schemas, by default a {@link StaxSchemaReader}
+    */
+   public void setSchemaReader(SchemaReader reader)
+   {
+      if(reader == null)
+         throw new IllegalArgumentException("reader is null");
+      this.reader = reader;
+   }
+
+   /**
+    * @param parallelism the number of threads used for loading and generating, 0 means one per processor
+    */
+   public void setParallelism(int parallelism)
+   {
+      if(parallelism < 0)
+         throw new IllegalArgumentException("parallelism must not be negative");
+      this.parallelism = parallelism;
+   }
+
+   /**
+    * Only generate the groups and types which are reachable from the given root
+    * through element types and group references. Without roots everything is generated.
+    *
+    * @param name the name of a top level element or, if there is no such element, of a group or type
+    */
+   public void addRoot(String name)
+   {
+      roots.add(name);
+   }
+
+   /**
+    * Map a namespace onto a local schema, which is used instead of the schema location of its imports.
+    */
+   public void addCatalogEntry(String namespaceURI, File file)
+   {
+      catalog.put(namespaceURI, file);
+      locator = null;
+   }
+
+   /**
+    * Map the namespace of included or imported schemas onto the package their types are generated in.
+    * The schemas which are added are always generated in the package of this generator.
+    */
+   public void setNamespacePackage(String namespaceURI, String packageName)
+   {
+      namespacePackages.put(namespaceURI, packageName);
+      locator = null;
+   }
+
+   /**
+    * @param sink where to write the generated sources, by default the destination directory
+    */
+   public void setSink(CodeSink sink)
+   {
+      this.sink = sink;
+   }
+
+   /**
+    * @param writeSources whether to write the generated sources to the destination directory, true by default
+    */
+   public void setWriteSources(boolean writeSources)
+   {
+      this.writeSources = writeSources;
+   }
+
+   /**
+    * The implementations need the runtime module for their lists, which start out shared and empty.
+    *
+    * @param generateImplementations whether to generate a concrete class next to each interface, false by default
+    */
+   public void setGenerateImplementations(boolean generateImplementations)
+   {
+      this.generateImplementations = generateImplementations;
+   }
+
+   /**
+    * The generated parsers need the runtime module and fill the implementations, so those are generated as well.
+    *
+    * @param generateParsers whether to generate a StAX parser for each type and group, false by default
+    */
+   public void setGenerateParsers(boolean generateParsers)
+   {
+      this.generateParsers = generateParsers;
+   }
+
+   /**
+    * The generated writers need the runtime module.
+    *
+    * @param generateWriters whether to generate a StAX writer for each type and group, false by default
+    */
+   public void setGenerateWriters(boolean generateWriters)
+   {
+      this.generateWriters = generateWriters;
+   }
+
+   /**
+    * The generated codecs need the runtime module and decode into the implementations, so those are generated as well.
+    *
+    * @param generateCodecs whether to generate a binary codec for each type, false by default
+    */
+   public void setGenerateCodecs(boolean generateCodecs)
+   {
+      this.generateCodecs = generateCodecs;
+   }
+
+   /**
+    * The implementations act as builders of the immutables, so those are generated as well.
+    *
+    * @param generateImmutables whether to generate an immutable implementation of each type, false by default
+    */
+   public void setGenerateImmutables(boolean generateImmutables)
+   {
+      this.generateImmutables = generateImmutables;
+   }
+
+   /**
+    * The generated mergers need the runtime module and merge into the implementations, so those are generated as well.
+    *
+    * @param generateMergers whether to generate a merger for each type with elements, false by default
+    */
+   public void setGenerateMergers(boolean generateMergers)
+   {
+      this.generateMergers = generateMergers;
+   }
+
+   /**
+    * @param dir where to cache the schema models and the Java types resolved from them, null to not cache which is the default
+    */
+   public void setSchemaCache(File dir)
+   {
+      this.cache = dir != null ? new SchemaCache(dir) : null;
+   }
+
+   /**
+    * @param metrics where to record the phases and counts of the runs, null to not measure which is the default
+    */
+   public void setMetrics(GeneratorMetrics metrics)
+   {
+      this.metrics = metrics;
+   }
+
+   /**
+    * @param generateVisitors whether to generate a visitor and traversal of the package, false by default
+    */
+   public void setGenerateVisitors(boolean generateVisitors)
+   {
+      this.generateVisitors = generateVisitors;
+   }
+
+   /**
+    * @param generateValidators whether to generate validators which check the schema constraints on the model, false by default
+    */
+   public void setGenerateValidators(boolean generateValidators)
+   {
+      this.generateValidators = generateValidators;
+   }
+
+   public static void generate(String destDirName, String destPkg, String... xsdFileNames) throws IOException
+   {
+      File destDir = new File(destDirName);
+      destDir.mkdirs();
+
+      new Generator(destPkg, destDir).run(xsdFileNames);
+   }
+
+   static String javaIdentifier(String s)
    {
       return normalize(Character.toUpperCase(s.charAt(0)) + s.substring(1));
    }
 
+   /**
+    * Usage: [--parallelism=n] [--reader=stax|jaxb] [--compile=dir|jar] [--classpath=path] [--schema-cache=dir] [--root=name] [--catalog=namespace=file] [--package=namespace=package] [--jar=file] [--no-sources] [--implementations] [--parsers] [--writers] [--codecs] [--immutables] [--mergers] [--visitors] [--validators] [--metrics] destDir package xsdFile...
+    */
    public static void main(String args[]) throws IOException
    {
-      String xsdFiles[] = new String[args.length - 2];
-      System.arraycopy(args, 2, xsdFiles, 0, xsdFiles.length);
-      Generator.generate(args[0], args[1], xsdFiles);
+      int i = 0;
+      int parallelism = 1;
+      SchemaReader reader = null;
+      File compileOutput = null;
+      String classpath = null;
+      File schemaCache = null;
+      boolean writeSources = true;
+      File jar = null;
+      List<String> roots = new ArrayList<String>();
+      Map<String, File> catalog = new LinkedHashMap<String, File>();
+      Map<String, String> namespacePackages = new LinkedHashMap<String, String>();
+      boolean generateImplementations = false;
+      boolean generateParsers = false;
+      boolean generateWriters = false;
+      boolean generateCodecs = false;
+      boolean generateImmutables = false;
+      boolean generateMergers = false;
+      boolean generateVisitors = false;
+      boolean generateValidators = false;
+      GeneratorMetrics metrics = null;
+      for(; i < args.length && args[i].startsWith("--"); i++)
+      {
+         String option = args[i];
+         if(option.startsWith("--parallelism="))
+            parallelism = Integer.parseInt(option.substring("--parallelism=".length()));
+         else if(option.equals("--reader=jaxb"))
+            reader = new JaxbSchemaReader();
+         else if(option.equals("--reader=stax"))
+            reader = new StaxSchemaReader();
+         else if(option.startsWith("--compile="))
+            compileOutput = new File(option.substring("--compile=".length()));
+         else if(option.startsWith("--classpath="))
+            classpath = option.substring("--classpath=".length());
+         else if(option.startsWith("--schema-cache="))
+            schemaCache = new File(option.substring("--schema-cache=".length()));
+         else if(option.startsWith("--root="))
+            roots.add(option.substring("--root=".length()));
+         else if(option.startsWith("--catalog="))
+         {
+            String entry = option.substring("--catalog=".length());
+            // a namespace is more likely to contain an '=' than a file name
+            int j = entry.lastIndexOf('=');
+            catalog.put(entry.substring(0, j), new File(entry.substring(j + 1)));
+         }
+         else if(option.startsWith("--package="))
+         {
+            String entry = option.substring("--package=".length());
+            int j = entry.lastIndexOf('=');
+            namespacePackages.put(entry.substring(0, j), entry.substring(j + 1));
+         }
+         else if(option.startsWith("--jar="))
+            jar = new File(option.substring("--jar=".length()));
+         else if(option.equals("--no-sources"))
+            writeSources = false;
+         else if(option.equals("--implementations"))
+            generateImplementations = true;
+         else if(option.equals("--parsers"))
+            generateParsers = true;
+         else if(option.equals("--writers"))
+            generateWriters = true;
+         else if(option.equals("--codecs"))
+            generateCodecs = true;
+         else if(option.equals("--immutables"))
+            generateImmutables = true;
+         else if(option.equals("--mergers"))
+            generateMergers = true;
+         else if(option.equals("--visitors"))
+            generateVisitors = true;
+         else if(option.equals("--validators"))
+            generateValidators = true;
+         else if(option.equals("--metrics"))
+            metrics = new GeneratorMetrics();
+         else
+            throw new IllegalArgumentException("Unknown option " + option);
+      }
+      File destDir = new File(args[i]);
+      destDir.mkdirs();
+      String xsdFiles[] = new String[args.length - i - 2];
+      System.arraycopy(args, i + 2, xsdFiles, 0, xsdFiles.length);
+      Generator generator = new Generator(args[i + 1], destDir);
+      generator.setParallelism(parallelism);
+      if(reader != null)
+         generator.setSchemaReader(reader);
+      generator.setCompileOutput(compileOutput);
+      generator.setClasspath(classpath);
+      generator.setSchemaCache(schemaCache);
+      generator.setWriteSources(writeSources);
+      for(String root : roots)
+         generator.addRoot(root);
+      for(Map.Entry<String, File> entry : catalog.entrySet())
+         generator.addCatalogEntry(entry.getKey(), entry.getValue());
+      for(Map.Entry<String, String> entry : namespacePackages.entrySet())
+         generator.setNamespacePackage(entry.getKey(), entry.getValue());
+      if(jar != null)
+         generator.setSink(new JarSink(jar));
+      generator.setGenerateImplementations(generateImplementations);
+      generator.setGenerateParsers(generateParsers);
+      generator.setGenerateWriters(generateWriters);
+      generator.setGenerateCodecs(generateCodecs);
+      generator.setGenerateImmutables(generateImmutables);
+      generator.setGenerateMergers(generateMergers);
+      generator.setGenerateVisitors(generateVisitors);
+      generator.setGenerateValidators(generateValidators);
+      generator.setMetrics(metrics);
+      generator.run(xsdFiles);
+      if(metrics != null)
+         metrics.print(System.out);
    }
 
-   private static String normalize(String s)
+   static String normalize(String s)
    {
-      String result = "";
+      if(s.indexOf('-') == -1)
+         return s;
+      StringBuilder result = new StringBuilder(s.length());
       StringTokenizer st = new StringTokenizer(s, "-");
       if(st.hasMoreTokens())
-         result = st.nextToken();
+         result.append(st.nextToken());
       while(st.hasMoreTokens())
       {
          String token = st.nextToken();
-         result += Character.toUpperCase(token.charAt(0)) + token.substring(1);
+         result.append(Character.toUpperCase(token.charAt(0))).append(token, 1, token.length());
       }
-      return result;
+      return result.toString();
    }
 
-   private String packageNamePrefix(Schema schema)
+   private String packageNamePrefix(SchemaModel schema)
    {
       String pkg = knownSchemaPackages.get(schema);
       if(pkg == null)
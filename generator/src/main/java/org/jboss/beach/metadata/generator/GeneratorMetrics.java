@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Where the time of generator runs goes and how much they produce. Phases which
+ * run concurrently are measured by the wall clock, the schemas each by their own.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class GeneratorMetrics
+{
+   public enum Phase
+   {
+      /** checking and storing the manifest */
+      MANIFEST,
+      /** reading the schemas and their includes */
+      READ,
+      /** resolving the Java types and properties of the definitions */
+      RESOLVE,
+      /** emitting, and writing, the sources */
+      EMIT,
+      /** compiling the sources in memory */
+      COMPILE
+   }
+
+   public enum Counter
+   {
+      SCHEMAS,
+      TYPES,
+      PROPERTIES,
+      RESOLVER_HITS,
+      RESOLVER_MISSES,
+      FILES_WRITTEN,
+      FILES_UNCHANGED,
+      BYTES_WRITTEN
+   }
+
+   private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+   private final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+   // schema file -> nanos
+   private final Map<String, Long> schemaNanos = new LinkedHashMap<String, Long>();
+
+   void add(Phase phase, long nanos)
+   {
+      this.nanos.addAndGet(phase.ordinal(), nanos);
+   }
+
+   void add(Counter counter, long n)
+   {
+      counts.addAndGet(counter.ordinal(), n);
+   }
+
+   synchronized void schemaRead(String name, long nanos)
+   {
+      add(Counter.SCHEMAS, 1);
+      Long previous = schemaNanos.get(name);
+      schemaNanos.put(name, previous == null ? nanos : previous + nanos);
+   }
+
+   public long getNanos(Phase phase)
+   {
+      return nanos.get(phase.ordinal());
+   }
+
+   public long getCount(Counter counter)
+   {
+      return counts.get(counter.ordinal());
+   }
+
+   /**
+    * @return the time spent reading each schema, in the order they were read
+    */
+   public synchronized Map<String, Long> getSchemaNanos()
+   {
+      return new LinkedHashMap<String, Long>(schemaNanos);
+   }
+
+   /**
+    * Print one name=value line per metric, times in milliseconds.
+    */
+   public void print(PrintStream out)
+   {
+      for(Phase phase : Phase.values())
+         out.println("phase." + phase.name().toLowerCase() + ".ms=" + millis(getNanos(phase)));
+      for(Map.Entry<String, Long> entry : getSchemaNanos().entrySet())
+         out.println("schema." + entry.getKey() + ".ms=" + millis(entry.getValue()));
+      for(Counter counter : Counter.values())
+         out.println(counter.name().toLowerCase().replace('_', '.') + "=" + getCount(counter));
+   }
+
+   private static long millis(long nanos)
+   {
+      return TimeUnit.NANOSECONDS.toMillis(nanos);
+   }
+}
@@ -0,0 +1,257 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emits the immutable counterpart of a generated implementation.
+ *
+ * All fields are final, so a frozen instance can be handed to other threads
+ * without synchronization. The implementation is its builder: freeze() it to
+ * get an immutable instance and toBuilder() to derive a new one. Frozen
+ * children and lists are shared instead of copied.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class ImmutableEmitter
+{
+   private final String packageName;
+
+   ImmutableEmitter(String packageName)
+   {
+      this.packageName = packageName;
+   }
+
+   static String className(TypeInfo type)
+   {
+      return "Immutable" + type.identifier;
+   }
+
+   /**
+    * @return the immutable class name of a possibly qualified Java type
+    */
+   private static String className(String javaType)
+   {
+      int i = javaType.lastIndexOf('.');
+      return javaType.substring(0, i + 1) + "Immutable" + javaType.substring(i + 1);
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      CodeWriter out = CodeWriter.open();
+      String className = className(type);
+      String impl = ImplementationEmitter.className(type);
+      List<PropertyInfo> properties;
+      if(type.kind == TypeInfo.Kind.ELEMENTS)
+         properties = type.getAllProperties();
+      else if(type.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+      {
+         properties = new ArrayList<PropertyInfo>();
+         properties.add(PropertyInfo.attribute("value", "", null, false));
+         properties.addAll(type.properties);
+      }
+      else
+         throw new IllegalArgumentException("Can't freeze " + type);
+
+      int primitives = 0;
+      boolean lists = false;
+      for(PropertyInfo property : properties)
+      {
+         if(property.getPrimitive() != null)
+            primitives++;
+         if(property.collection || property.type.startsWith("java.util.List<"))
+            lists = true;
+      }
+      int words = (primitives + 63) / 64;
+
+      out.println("package " + packageName + ";");
+      out.println();
+      if(lists)
+      {
+         out.println("import org.jboss.beach.metadata.runtime.FrozenList;");
+         out.println();
+      }
+      out.println("/**");
+      out.println(" * Generated immutable implementation of {@link " + type.identifier + "}.");
+      out.println(" */");
+      out.println("public final class " + className + " implements " + type.identifier);
+      out.println("{");
+      for(int i = 0; i < words; i++)
+         out.println("   private final long presence" + i + ";");
+      if(words > 0)
+         out.println();
+      for(PropertyInfo property : properties)
+      {
+         String primitive = property.getPrimitive();
+         out.println("   private final " + (primitive != null ? primitive : property.type) + " " + property.getVariable() + ";");
+      }
+      out.println();
+
+      out.println("   " + className + "(" + impl + " builder)");
+      out.println("   {");
+      for(int i = 0; i < words; i++)
+         out.println("      this.presence" + i + " = builder.presence" + i + ";");
+      for(PropertyInfo property : properties)
+      {
+         String v = property.getVariable();
+         out.println("      this." + v + " = " + freeze(property, "builder." + v) + ";");
+      }
+      out.println("   }");
+      out.println();
+
+      out.println("   /**");
+      out.println("    * @return the value itself if it is already frozen, otherwise an immutable copy");
+      out.println("    */");
+      out.println("   public static " + className + " freeze(" + type.identifier + " value)");
+      out.println("   {");
+      out.println("      if(value == null || value instanceof " + className + ")");
+      out.println("         return (" + className + ") value;");
+      out.println("      if(value instanceof " + impl + ")");
+      out.println("         return new " + className + "((" + impl + ") value);");
+      out.println("      " + impl + " builder = new " + impl + "();");
+      for(PropertyInfo property : properties)
+         out.println("      builder.set" + property.getIdentifier() + "(value.get" + property.getIdentifier() + "());");
+      out.println("      return new " + className + "(builder);");
+      out.println("   }");
+      out.println();
+
+      out.println("   /**");
+      out.println("    * @return a builder to derive a new instance from, which shares the frozen children and lists of this one");
+      out.println("    */");
+      out.println("   public " + impl + " toBuilder()");
+      out.println("   {");
+      out.println("      " + impl + " builder = new " + impl + "();");
+      for(int i = 0; i < words; i++)
+         out.println("      builder.presence" + i + " = presence" + i + ";");
+      for(PropertyInfo property : properties)
+         out.println("      builder." + property.getVariable() + " = " + property.getVariable() + ";");
+      out.println("      return builder;");
+      out.println("   }");
+
+      int bit = 0;
+      for(PropertyInfo property : properties)
+      {
+         out.println();
+         if(property.getPrimitive() != null)
+            emitPrimitive(out, property, "presence" + (bit / 64), "0x" + Long.toHexString(1L << (bit++ % 64)) + "L");
+         else
+            emitField(out, property);
+      }
+
+      for(PropertyInfo property : properties)
+      {
+         if(property.collection && property.valueType != null && property.valueType.kind != TypeInfo.Kind.ENUM)
+         {
+            out.println();
+            emitFreezeList(out, property);
+         }
+      }
+      out.println("}");
+
+      return out.finish();
+   }
+
+   /**
+    * @return the expression which gives the frozen form of a builder field
+    */
+   private static String freeze(PropertyInfo property, String field)
+   {
+      if(property.collection)
+      {
+         if(property.valueType != null && property.valueType.kind != TypeInfo.Kind.ENUM)
+            return "freeze" + property.getIdentifier() + "(" + field + ")";
+         return "FrozenList.copyOf(" + field + ")";
+      }
+      if(property.valueType != null && property.valueType.kind != TypeInfo.Kind.ENUM)
+         return className(property.itemType) + ".freeze(" + field + ")";
+      if(property.type.startsWith("java.util.List<"))
+         return field + " == null ? null : FrozenList.copyOf(" + field + ")";
+      // primitives and immutable values
+      return field;
+   }
+
+   private static void emitFreezeList(CodeWriter out, PropertyInfo property)
+   {
+      String item = property.itemType;
+      out.println("   private static " + property.type + " freeze" + property.getIdentifier() + "(" + property.type + " list)");
+      out.println("   {");
+      out.println("      if(list instanceof FrozenList)");
+      out.println("      {");
+      out.println("         // anyone can build a FrozenList, so only share it if its items are frozen too");
+      out.println("         boolean frozen = true;");
+      out.println("         for(int i = 0, n = list.size(); frozen && i < n; i++)");
+      out.println("            frozen = list.get(i) instanceof " + className(item) + ";");
+      out.println("         if(frozen)");
+      out.println("            return list;");
+      out.println("      }");
+      out.println("      " + item + "[] items = new " + item + "[list.size()];");
+      out.println("      for(int i = 0; i < items.length; i++)");
+      out.println("         items[i] = " + className(item) + ".freeze(list.get(i));");
+      out.println("      return FrozenList.of(items);");
+      out.println("   }");
+   }
+
+   private static void emitField(CodeWriter out, PropertyInfo property)
+   {
+      out.println("   public " + property.type + " get" + property.getIdentifier() + "()");
+      out.println("   {");
+      out.println("      return " + property.getVariable() + ";");
+      out.println("   }");
+      out.println();
+      emitSetter(out, property.type, property);
+   }
+
+   private static void emitSetter(CodeWriter out, String type, PropertyInfo property)
+   {
+      out.println("   public void set" + property.getIdentifier() + "(" + type + " " + property.getVariable() + ")");
+      out.println("   {");
+      out.println("      throw new UnsupportedOperationException(\"frozen\");");
+      out.println("   }");
+   }
+
+   private static void emitPrimitive(CodeWriter out, PropertyInfo property, String presence, String mask)
+   {
+      String s = property.getIdentifier();
+      String v = property.getVariable();
+      String primitive = property.getPrimitive();
+      out.println("   public " + property.type + " get" + s + "()");
+      out.println("   {");
+      out.println("      if((" + presence + " & " + mask + ") == 0)");
+      out.println("         return null;");
+      out.println("      return " + v + ";");
+      out.println("   }");
+      out.println();
+      emitSetter(out, property.type, property);
+      out.println();
+      out.println("   public " + primitive + " get" + s + "Value()");
+      out.println("   {");
+      out.println("      return " + v + ";");
+      out.println("   }");
+      out.println();
+      out.println("   public boolean isSet" + s + "()");
+      out.println("   {");
+      out.println("      return (" + presence + " & " + mask + ") != 0;");
+      out.println("   }");
+   }
+}
@@ -0,0 +1,288 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.util.List;
+
+/**
+ * Emits the concrete class of a generated interface.
+ *
+ * Values which fit a primitive are stored as one and whether they have been set
+ * is kept in a packed bitset, so an unset optional value costs a single bit instead
+ * of a reference to a wrapper.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class ImplementationEmitter
+{
+   private final String packageName;
+   private final boolean immutables;
+
+   /**
+    * @param immutables whether there is an immutable counterpart to freeze to
+    */
+   ImplementationEmitter(String packageName, boolean immutables)
+   {
+      this.packageName = packageName;
+      this.immutables = immutables;
+   }
+
+   static String className(TypeInfo type)
+   {
+      return type.identifier + "Impl";
+   }
+
+   /**
+    * @return an expression for the list of a property which does not copy the shared list,
+    *    for generated code which only reads
+    */
+   static String peek(TypeInfo type, PropertyInfo property, String value)
+   {
+      String impl = className(type);
+      String s = property.getIdentifier();
+      return value + " instanceof " + impl + " ? ((" + impl + ") " + value + ").peek" + s + "() : " + value + ".get" + s + "()";
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      CodeWriter out = CodeWriter.open();
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated implementation of {@link " + type.identifier + "}.");
+      out.println(" */");
+      out.println("public final class " + className(type) + " implements " + type.identifier);
+      out.println("{");
+      switch(type.kind)
+      {
+         case ELEMENTS:
+            emitElements(out, type.getAllProperties());
+            break;
+         case SIMPLE_CONTENT:
+            emitSimpleContent(out, type.properties);
+            break;
+         default:
+            throw new IllegalArgumentException("Can't implement " + type);
+      }
+      if(immutables)
+      {
+         String immutable = ImmutableEmitter.className(type);
+         out.println();
+         out.println("   /**");
+         out.println("    * @return an immutable copy, which shares everything already frozen");
+         out.println("    */");
+         out.println("   public " + immutable + " freeze()");
+         out.println("   {");
+         out.println("      return " + immutable + ".freeze(this);");
+         out.println("   }");
+      }
+      out.println("}");
+
+      return out.finish();
+   }
+
+   /**
+    * The immutable counterpart copies the fields directly.
+    */
+   private String fieldModifier()
+   {
+      return immutables ? "" : "private ";
+   }
+
+   private void emitElements(CodeWriter out, List<PropertyInfo> properties)
+   {
+      int primitives = 0;
+      for(PropertyInfo property : properties)
+      {
+         if(property.getPrimitive() != null)
+            primitives++;
+      }
+      for(int i = 0; i < (primitives + 63) / 64; i++)
+         out.println("   " + fieldModifier() + "long presence" + i + ";");
+      if(primitives > 0)
+         out.println();
+
+      for(PropertyInfo property : properties)
+      {
+         String primitive = property.getPrimitive();
+         if(property.collection)
+            out.println("   " + fieldModifier() + property.type + " " + property.getVariable() + " = java.util.Collections.emptyList();");
+         else
+            out.println("   " + fieldModifier() + (primitive != null ? primitive : property.type) + " " + property.getVariable() + ";");
+      }
+
+      int bit = 0;
+      for(PropertyInfo property : properties)
+      {
+         out.println();
+         if(property.getPrimitive() != null)
+            emitPrimitive(out, property, "presence" + (bit / 64), "0x" + Long.toHexString(1L << (bit++ % 64)) + "L");
+         else if(property.collection)
+            emitCollection(out, property);
+         else
+            emitField(out, property.type, property.getIdentifier(), property.getVariable());
+      }
+
+      out.println();
+      out.println("   /**");
+      out.println("    * Release the spare capacity of all lists, including those of the children.");
+      out.println("    */");
+      out.println("   public void trimToSize()");
+      out.println("   {");
+      for(PropertyInfo property : properties)
+      {
+         String v = property.getVariable();
+         boolean elements = property.valueType != null && property.valueType.kind == TypeInfo.Kind.ELEMENTS;
+         String impl = elements ? property.itemType + "Impl" : null;
+         if(property.collection)
+         {
+            out.println("      " + v + " = org.jboss.beach.metadata.runtime.Lists.trimToSize(" + v + ");");
+            if(elements)
+            {
+               out.println("      for(" + property.itemType + " item : " + v + ")");
+               out.println("      {");
+               out.println("         if(item instanceof " + impl + ")");
+               out.println("            ((" + impl + ") item).trimToSize();");
+               out.println("      }");
+            }
+         }
+         else if(elements)
+         {
+            out.println("      if(" + v + " instanceof " + impl + ")");
+            out.println("         ((" + impl + ") " + v + ").trimToSize();");
+         }
+      }
+      out.println("   }");
+   }
+
+   private void emitSimpleContent(CodeWriter out, List<PropertyInfo> attributes)
+   {
+      out.println("   " + fieldModifier() + "String value;");
+      for(PropertyInfo attribute : attributes)
+         out.println("   " + fieldModifier() + "String " + attribute.getVariable() + ";");
+      out.println();
+      emitField(out, "String", "Value", "value");
+      for(PropertyInfo attribute : attributes)
+      {
+         out.println();
+         emitField(out, "String", attribute.getIdentifier(), attribute.getVariable());
+      }
+   }
+
+   private static void emitField(CodeWriter out, String type, String identifier, String variable)
+   {
+      out.println("   public " + type + " get" + identifier + "()");
+      out.println("   {");
+      out.println("      return " + variable + ";");
+      out.println("   }");
+      out.println();
+      out.println("   public void set" + identifier + "(" + type + " " + variable + ")");
+      out.println("   {");
+      out.println("      this." + variable + " = " + variable + ";");
+      out.println("   }");
+   }
+
+   private static void emitCollection(CodeWriter out, PropertyInfo property)
+   {
+      String s = property.getIdentifier();
+      String v = property.getVariable();
+      out.println("   public " + property.type + " get" + s + "()");
+      out.println("   {");
+      out.println("      // the shared empty or frozen list, copy on first use");
+      out.println("      if(org.jboss.beach.metadata.runtime.Lists.isShared(" + v + "))");
+      out.println("         " + v + " = org.jboss.beach.metadata.runtime.Lists.modifiable(" + v + ");");
+      out.println("      return " + v + ";");
+      out.println("   }");
+      out.println();
+      out.println("   public void set" + s + "(" + property.type + " " + v + ")");
+      out.println("   {");
+      out.println("      if(" + v + " == null)");
+      out.println("         this." + v + " = java.util.Collections.emptyList();");
+      out.println("      else");
+      out.println("         this." + v + " = " + v + ";");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * @return the list as is, which may be shared and must not be modified");
+      out.println("    */");
+      out.println("   " + property.type + " peek" + s + "()");
+      out.println("   {");
+      out.println("      return " + v + ";");
+      out.println("   }");
+   }
+
+   private static void emitPrimitive(CodeWriter out, PropertyInfo property, String presence, String mask)
+   {
+      String s = property.getIdentifier();
+      String v = property.getVariable();
+      String primitive = property.getPrimitive();
+      out.println("   public " + property.type + " get" + s + "()");
+      out.println("   {");
+      out.println("      if((" + presence + " & " + mask + ") == 0)");
+      out.println("         return null;");
+      out.println("      return " + v + ";");
+      out.println("   }");
+      out.println();
+      out.println("   public void set" + s + "(" + property.type + " " + v + ")");
+      out.println("   {");
+      out.println("      if(" + v + " == null)");
+      out.println("         unset" + s + "();");
+      out.println("      else");
+      out.println("         set" + s + "(" + v + "." + primitive + "Value());");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * @return the value or " + defaultValue(primitive) + " if it is not set");
+      out.println("    */");
+      out.println("   public " + primitive + " get" + s + "Value()");
+      out.println("   {");
+      out.println("      return " + v + ";");
+      out.println("   }");
+      out.println();
+      out.println("   public void set" + s + "(" + primitive + " " + v + ")");
+      out.println("   {");
+      out.println("      this." + v + " = " + v + ";");
+      out.println("      " + presence + " |= " + mask + ";");
+      out.println("   }");
+      out.println();
+      out.println("   public boolean isSet" + s + "()");
+      out.println("   {");
+      out.println("      return (" + presence + " & " + mask + ") != 0;");
+      out.println("   }");
+      out.println();
+      out.println("   public void unset" + s + "()");
+      out.println("   {");
+      out.println("      " + v + " = " + defaultValue(primitive) + ";");
+      out.println("      " + presence + " &= ~" + mask + ";");
+      out.println("   }");
+   }
+
+   private static String defaultValue(String primitive)
+   {
+      if(primitive.equals("boolean"))
+         return "false";
+      if(primitive.equals("long"))
+         return "0L";
+      return "0";
+   }
+}
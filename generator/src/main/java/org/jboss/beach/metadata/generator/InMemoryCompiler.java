@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Compiles sources held in memory with the system Java compiler, without
+ * them or the resulting class files ever touching the disk in between.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class InMemoryCompiler
+{
+   /**
+    * The Java the generated code, like the rest of the metadata, targets.
+    */
+   static final String TARGET = "1.6";
+
+   private static class SourceFile extends SimpleJavaFileObject
+   {
+      private final String content;
+
+      SourceFile(String className, String content)
+      {
+         super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+         this.content = content;
+      }
+
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors)
+      {
+         return content;
+      }
+   }
+
+   private static class ClassFile extends SimpleJavaFileObject
+   {
+      private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+      ClassFile(String className)
+      {
+         super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+      }
+
+      @Override
+      public OutputStream openOutputStream()
+      {
+         return content;
+      }
+   }
+
+   private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+   {
+      // class name -> class file
+      final SortedMap<String, ClassFile> classFiles = new TreeMap<String, ClassFile>();
+
+      MemoryFileManager(StandardJavaFileManager fileManager)
+      {
+         super(fileManager);
+      }
+
+      @Override
+      public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException
+      {
+         if(kind != JavaFileObject.Kind.CLASS)
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+         ClassFile classFile = new ClassFile(className);
+         classFiles.put(className, classFile);
+         return classFile;
+      }
+   }
+
+   private InMemoryCompiler()
+   {
+   }
+
+   /**
+    * @param sources class name -> source
+    * @param classpath the class path to compile against or null for the default
+    * @param output a directory or, if the name ends in .jar, a jar file
+    */
+   static void compile(Map<String, byte[]> sources, String classpath, File output) throws IOException
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      if(compiler == null)
+         throw new IOException("No system Java compiler available, a JDK is needed to compile");
+
+      DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+      MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, null));
+      try
+      {
+         List<JavaFileObject> units = new ArrayList<JavaFileObject>(sources.size());
+         for(Map.Entry<String, byte[]> entry : sources.entrySet())
+            // the generator prints with the platform encoding
+            units.add(new SourceFile(entry.getKey(), new String(entry.getValue())));
+         List<String> options = new ArrayList<String>();
+         String target = target(TARGET, System.getProperty("java.specification.version"));
+         options.add("-source");
+         options.add(target);
+         options.add("-target");
+         options.add(target);
+         if(classpath != null)
+         {
+            options.add("-classpath");
+            options.add(classpath);
+         }
+         Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+         if(!Boolean.TRUE.equals(success))
+         {
+            StringBuilder sb = new StringBuilder("Failed to compile generated sources");
+            for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+            {
+               if(diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                  sb.append("\n").append(diagnostic);
+            }
+            throw new IOException(sb.toString());
+         }
+      }
+      finally
+      {
+         fileManager.close();
+      }
+
+      if(output.getName().endsWith(".jar"))
+         writeJar(fileManager.classFiles, output);
+      else
+         writeDirectory(fileManager.classFiles, output);
+   }
+
+   /**
+    * @param javaVersion the specification version of the running Java
+    * @return the target or, if the compiler of the running Java dropped it, the oldest it still has
+    */
+   static String target(String target, String javaVersion)
+   {
+      int feature = feature(javaVersion);
+      // javac dropped 1.6 in 12 and 1.7 in 20
+      int oldest = feature >= 20 ? 8 : feature >= 12 ? 7 : 6;
+      if(feature(target) >= oldest)
+         return target;
+      return "1." + oldest;
+   }
+
+   /**
+    * @return the feature number of a version like 1.6 or 17
+    */
+   private static int feature(String version)
+   {
+      if(version.startsWith("1."))
+         version = version.substring(2);
+      int i = version.indexOf('.');
+      return Integer.parseInt(i < 0 ? version : version.substring(0, i));
+   }
+
+   private static void writeDirectory(Map<String, ClassFile> classFiles, File dir) throws IOException
+   {
+      for(Map.Entry<String, ClassFile> entry : classFiles.entrySet())
+      {
+         File file = new File(dir, entry.getKey().replace('.', File.separatorChar) + ".class");
+         file.getParentFile().mkdirs();
+         Manifest.writeIfChanged(file, entry.getValue().content.toByteArray());
+      }
+      System.out.println("Compiled " + classFiles.size() + " classes into " + dir);
+   }
+
+   private static void writeJar(Map<String, ClassFile> classFiles, File jar) throws IOException
+   {
+      File parent = jar.getAbsoluteFile().getParentFile();
+      if(parent != null)
+         parent.mkdirs();
+      JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)));
+      try
+      {
+         for(Map.Entry<String, ClassFile> entry : classFiles.entrySet())
+         {
+            out.putNextEntry(new JarEntry(entry.getKey().replace('.', '/') + ".class"));
+            entry.getValue().content.writeTo(out);
+            out.closeEntry();
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+      System.out.println("Compiled " + classFiles.size() + " classes into " + jar);
+   }
+}
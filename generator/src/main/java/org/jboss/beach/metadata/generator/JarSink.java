@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the sources into a sources jar.
+ *
+ * The emitters finish in any order, so the entries are kept until close and then
+ * written sorted by path, which makes the jar the same from run to run.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class JarSink implements CodeSink
+{
+   private final ZipOutputStream out;
+   private final SortedMap<String, byte[]> entries = new TreeMap<String, byte[]>();
+   private final Set<String> directories = new HashSet<String>();
+
+   public JarSink(File file) throws IOException
+   {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if(parent != null)
+         parent.mkdirs();
+      this.out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+   }
+
+   public synchronized boolean write(String path, byte[] content) throws IOException
+   {
+      entries.put(path, content);
+      return true;
+   }
+
+   private void addDirectories(String path) throws IOException
+   {
+      for(int i = path.indexOf('/'); i != -1; i = path.indexOf('/', i + 1))
+      {
+         String directory = path.substring(0, i + 1);
+         if(directories.add(directory))
+         {
+            out.putNextEntry(new ZipEntry(directory));
+            out.closeEntry();
+         }
+      }
+   }
+
+   public synchronized void close() throws IOException
+   {
+      try
+      {
+         for(Map.Entry<String, byte[]> entry : entries.entrySet())
+         {
+            addDirectories(entry.getKey());
+            out.putNextEntry(new ZipEntry(entry.getKey()));
+            out.write(entry.getValue());
+            out.closeEntry();
+         }
+         entries.clear();
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+}
@@ -0,0 +1,231 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.AttributeDefinition;
+import org.jboss.beach.metadata.generator.model.ComplexTypeDefinition;
+import org.jboss.beach.metadata.generator.model.Definition;
+import org.jboss.beach.metadata.generator.model.ElementParticle;
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+import org.jboss.beach.metadata.generator.model.GroupDefinition;
+import org.jboss.beach.metadata.generator.model.GroupRefParticle;
+import org.jboss.beach.metadata.generator.model.Particle;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.jboss.beach.metadata.generator.model.SimpleContentDefinition;
+import org.jboss.beach.metadata.generator.model.SimpleTypeDefinition;
+import org.jboss.beach.metadata.generator.xsd.Annotated;
+import org.jboss.beach.metadata.generator.xsd.Attribute;
+import org.jboss.beach.metadata.generator.xsd.ComplexType;
+import org.jboss.beach.metadata.generator.xsd.Documentation;
+import org.jboss.beach.metadata.generator.xsd.Element;
+import org.jboss.beach.metadata.generator.xsd.ExplicitGroup;
+import org.jboss.beach.metadata.generator.xsd.Facet;
+import org.jboss.beach.metadata.generator.xsd.Group;
+import org.jboss.beach.metadata.generator.xsd.GroupRef;
+import org.jboss.beach.metadata.generator.xsd.Import;
+import org.jboss.beach.metadata.generator.xsd.Include;
+import org.jboss.beach.metadata.generator.xsd.NamedGroup;
+import org.jboss.beach.metadata.generator.xsd.OpenAttrs;
+import org.jboss.beach.metadata.generator.xsd.Schema;
+import org.jboss.beach.metadata.generator.xsd.SimpleContent;
+import org.jboss.beach.metadata.generator.xsd.SimpleType;
+import org.jboss.beach.metadata.generator.xsd.TopLevelElement;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unmarshals the complete schema with JAXB and converts it into the model.
+ * Slower than the {@link StaxSchemaReader}, but it has been around for longer.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class JaxbSchemaReader implements SchemaReader
+{
+   public SchemaModel read(File file) throws IOException
+   {
+      Schema schema;
+      try
+      {
+         schema = (Schema) XsdContext.unmarshal(file);
+      }
+      catch(JAXBException e)
+      {
+         throw new IOException("Failed to read " + file + ": " + e.getMessage(), e);
+      }
+      List<String> includes = new ArrayList<String>();
+      Map<String, String> imports = new LinkedHashMap<String, String>();
+      for(OpenAttrs attrs : schema.getIncludeOrImportOrRedefine())
+      {
+         if(attrs instanceof Include)
+            includes.add(((Include) attrs).getSchemaLocation());
+         else if(attrs instanceof Import)
+            imports.put(((Import) attrs).getNamespace(), ((Import) attrs).getSchemaLocation());
+      }
+      List<Definition> definitions = new ArrayList<Definition>();
+      List<ElementParticle> elements = new ArrayList<ElementParticle>();
+      for(OpenAttrs attrs : schema.getSimpleTypeOrComplexTypeOrGroup())
+      {
+         if(attrs instanceof NamedGroup)
+         {
+            NamedGroup group = (NamedGroup) attrs;
+            List<Particle> particles = new ArrayList<Particle>();
+            for(Object p : group.getParticle())
+               particle(p, particles, 1, 1);
+            definitions.add(new GroupDefinition(group.getName(), documentation(group), particles));
+         }
+         else if(attrs instanceof ComplexType)
+         {
+            ComplexType type = (ComplexType) attrs;
+            List<Particle> particles = null;
+            ExplicitGroup group = type.getSequence() != null ? type.getSequence() : type.getChoice();
+            if(group != null)
+            {
+               particles = new ArrayList<Particle>();
+               modelGroup(group, group == type.getChoice(), particles, 1, 1);
+            }
+            definitions.add(new ComplexTypeDefinition(type.getName(), documentation(type), particles, simpleContent(type.getSimpleContent())));
+         }
+         else if(attrs instanceof SimpleType)
+         {
+            SimpleType type = (SimpleType) attrs;
+            QName restrictionBase = null;
+            List<FacetDefinition> facets = new ArrayList<FacetDefinition>();
+            if(type.getRestriction() != null)
+            {
+               restrictionBase = type.getRestriction().getBase();
+               facets(type.getRestriction().getFacets(), facets);
+            }
+            QName listItemType = type.getList() != null ? type.getList().getItemType() : null;
+            definitions.add(new SimpleTypeDefinition(type.getName(), documentation(type), restrictionBase, facets, listItemType));
+         }
+         else if(attrs instanceof TopLevelElement)
+            elements.add(element((Element) attrs, 1, 1));
+      }
+      return new SchemaModel(file.getPath(), schema.getTargetNamespace(), includes, imports, definitions, elements);
+   }
+
+   private static String documentation(Annotated annotated)
+   {
+      if(annotated.getAnnotation() == null)
+         return null;
+      Documentation doc = (Documentation) annotated.getAnnotation().getAppinfoOrDocumentation().get(0);
+      return (String) doc.getContent().get(0);
+   }
+
+   private static ElementParticle element(Element element, int groupMinOccurs, int groupMaxOccurs)
+   {
+      int minOccurs = groupMinOccurs == 0 ? 0 : minOccurs(element.getMinOccurs());
+      int maxOccurs = groupMaxOccurs == ElementParticle.UNBOUNDED ? ElementParticle.UNBOUNDED : maxOccurs(element.getMaxOccurs());
+      return new ElementParticle(element.getName(), element.getType(), minOccurs, maxOccurs, documentation(element));
+   }
+
+   private static void facets(List<Object> source, List<FacetDefinition> facets)
+   {
+      for(Object o : source)
+      {
+         String kind;
+         Facet facet;
+         if(o instanceof JAXBElement)
+         {
+            JAXBElement<?> element = (JAXBElement<?>) o;
+            kind = element.getName().getLocalPart();
+            facet = (Facet) element.getValue();
+         }
+         else
+         {
+            // pattern, totalDigits and whiteSpace have their own class
+            facet = (Facet) o;
+            String simpleName = o.getClass().getSimpleName();
+            kind = Character.toLowerCase(simpleName.charAt(0)) + simpleName.substring(1);
+         }
+         facets.add(new FacetDefinition(kind, facet.getValue()));
+      }
+   }
+
+   private static int maxOccurs(String value)
+   {
+      if(value == null)
+         return 1;
+      if(value.equals("unbounded"))
+         return ElementParticle.UNBOUNDED;
+      return Integer.parseInt(value);
+   }
+
+   private static int minOccurs(BigInteger value)
+   {
+      if(value == null)
+         return 1;
+      return value.intValue();
+   }
+
+   private static void modelGroup(Group group, boolean choice, List<Particle> particles, int minOccurs, int maxOccurs)
+   {
+      if(choice || minOccurs(group.getMinOccurs()) == 0)
+         minOccurs = 0;
+      if(maxOccurs(group.getMaxOccurs()) == ElementParticle.UNBOUNDED)
+         maxOccurs = ElementParticle.UNBOUNDED;
+      for(Object p : group.getParticle())
+         particle(p, particles, minOccurs, maxOccurs);
+   }
+
+   private static void particle(Object p, List<Particle> particles, int minOccurs, int maxOccurs)
+   {
+      JAXBElement<?> element = (JAXBElement<?>) p;
+      Object value = element.getValue();
+      if(value instanceof Element)
+         particles.add(element((Element) value, minOccurs, maxOccurs));
+      else if(value instanceof GroupRef)
+         particles.add(new GroupRefParticle(((GroupRef) value).getRef()));
+      else if(value instanceof ExplicitGroup)
+         modelGroup((Group) value, element.getName().getLocalPart().equals("choice"), particles, minOccurs, maxOccurs);
+      else
+         throw new IllegalStateException("Can't handle " + value);
+   }
+
+   private static SimpleContentDefinition simpleContent(SimpleContent content)
+   {
+      if(content == null)
+         return null;
+      List<AttributeDefinition> attributes = new ArrayList<AttributeDefinition>();
+      List<FacetDefinition> facets = new ArrayList<FacetDefinition>();
+      if(content.getExtension() != null)
+      {
+         for(Annotated annotated : content.getExtension().getAttributeOrAttributeGroup())
+         {
+            Attribute a = (Attribute) annotated;
+            attributes.add(new AttributeDefinition(a.getName(), a.getRef(), a.getType(), "required".equals(a.getUse())));
+         }
+         return new SimpleContentDefinition(true, content.getExtension().getBase(), attributes, facets);
+      }
+      facets(content.getRestriction().getFacets(), facets);
+      return new SimpleContentDefinition(false, content.getRestriction().getBase(), attributes, facets);
+   }
+}
@@ -0,0 +1,409 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Records what went into and came out of a generator run, so the next
+ * run can tell whether there is anything to do at all.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class Manifest
+{
+   static final String FILE_NAME = ".generator-manifest";
+
+   private static final String VERSION = "generator.version";
+   private static final String PACKAGE = "package";
+   private static final String OPTIONS = "options";
+   private static final String SCHEMAS = "schemas";
+   private static final String INPUT = "input.";
+   private static final String OUTPUT = "output.";
+
+   private static volatile String generatorVersion;
+
+   private String version;
+   private String packageName;
+   private String options = "";
+   private List<String> schemas = new ArrayList<String>();
+   // path -> SHA-1
+   private SortedMap<String, String> inputs = new TreeMap<String, String>();
+   private SortedMap<String, String> outputs = new TreeMap<String, String>();
+
+   Manifest(String packageName)
+   {
+      this.version = generatorVersion();
+      this.packageName = packageName;
+   }
+
+   private Manifest()
+   {
+   }
+
+   /**
+    * @return the manifest of the previous run or null if there is none
+    */
+   static Manifest load(File destDir)
+   {
+      File file = new File(destDir, FILE_NAME);
+      if(!file.isFile())
+         return null;
+      Properties properties = new Properties();
+      try
+      {
+         InputStream in = new BufferedInputStream(new FileInputStream(file));
+         try
+         {
+            properties.load(in);
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      catch(IOException e)
+      {
+         // treat it as if there was no previous run
+         return null;
+      }
+      Manifest manifest = new Manifest();
+      manifest.version = properties.getProperty(VERSION);
+      manifest.packageName = properties.getProperty(PACKAGE);
+      manifest.options = properties.getProperty(OPTIONS, "");
+      String s = properties.getProperty(SCHEMAS);
+      if(s != null && s.length() > 0)
+      {
+         for(String schema : s.split(File.pathSeparator))
+            manifest.schemas.add(schema);
+      }
+      for(String key : properties.stringPropertyNames())
+      {
+         if(key.startsWith(INPUT))
+            manifest.inputs.put(key.substring(INPUT.length()), properties.getProperty(key));
+         else if(key.startsWith(OUTPUT))
+            manifest.outputs.put(key.substring(OUTPUT.length()), properties.getProperty(key));
+      }
+      return manifest;
+   }
+
+   void store(File destDir) throws IOException
+   {
+      Properties properties = new Properties();
+      properties.setProperty(VERSION, version);
+      properties.setProperty(PACKAGE, packageName);
+      properties.setProperty(OPTIONS, options);
+      StringBuilder s = new StringBuilder();
+      for(String schema : schemas)
+      {
+         if(s.length() > 0)
+            s.append(File.pathSeparator);
+         s.append(schema);
+      }
+      properties.setProperty(SCHEMAS, s.toString());
+      for(Map.Entry<String, String> entry : inputs.entrySet())
+         properties.setProperty(INPUT + entry.getKey(), entry.getValue());
+      for(Map.Entry<String, String> entry : outputs.entrySet())
+         properties.setProperty(OUTPUT + entry.getKey(), entry.getValue());
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(destDir, FILE_NAME)));
+      try
+      {
+         properties.store(out, "Generated by " + Generator.class.getName() + ", do not edit");
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   /**
+    * @param options the generator options which affect the output
+    */
+   void setOptions(String options)
+   {
+      this.options = options;
+   }
+
+   void addSchema(File file) throws IOException
+   {
+      String path = file.getCanonicalPath();
+      schemas.add(path);
+      addInput(file);
+   }
+
+   void addInput(File file) throws IOException
+   {
+      String path = file.getCanonicalPath();
+      if(!inputs.containsKey(path))
+         inputs.put(path, digest(file));
+   }
+
+   synchronized void addOutput(String path, String digest)
+   {
+      outputs.put(path, digest);
+   }
+
+   /**
+    * Delete everything the previous run wrote which this run did not.
+    */
+   void deleteStaleOutputs(Manifest previous, File destDir)
+   {
+      for(String path : previous.outputs.keySet())
+      {
+         if(outputs.containsKey(path))
+            continue;
+         File file = new File(destDir, path.replace('/', File.separatorChar));
+         if(file.delete())
+            System.out.println("Deleted " + file);
+      }
+   }
+
+   /**
+    * Whether a run with the given arguments would produce exactly what the run
+    * that wrote this manifest produced.
+    */
+   boolean isUpToDate(File destDir, String packageName, String options, String... xsdFileNames) throws IOException
+   {
+      if(!generatorVersion().equals(version))
+         return false;
+      if(!packageName.equals(this.packageName))
+         return false;
+      if(!options.equals(this.options))
+         return false;
+      if(xsdFileNames.length != schemas.size())
+         return false;
+      for(int i = 0; i < xsdFileNames.length; i++)
+      {
+         if(!new File(xsdFileNames[i]).getCanonicalPath().equals(schemas.get(i)))
+            return false;
+      }
+      for(Map.Entry<String, String> entry : inputs.entrySet())
+      {
+         File file = new File(entry.getKey());
+         if(!file.isFile() || !digest(file).equals(entry.getValue()))
+            return false;
+      }
+      for(String path : outputs.keySet())
+      {
+         if(!new File(destDir, path.replace('/', File.separatorChar)).isFile())
+            return false;
+      }
+      return true;
+   }
+
+   static String digest(byte[] content)
+   {
+      MessageDigest md = messageDigest();
+      md.update(content);
+      return hex(md.digest());
+   }
+
+   static String digest(File file) throws IOException
+   {
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         return digest(in);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private static String digest(InputStream in) throws IOException
+   {
+      MessageDigest md = messageDigest();
+      byte buf[] = new byte[8192];
+      int n;
+      while((n = in.read(buf)) != -1)
+         md.update(buf, 0, n);
+      return hex(md.digest());
+   }
+
+   static String generatorVersion()
+   {
+      if(generatorVersion == null)
+         generatorVersion = codeSourceVersion(Generator.class);
+      return generatorVersion;
+   }
+
+   /**
+    * Every class of the generator shapes the output, not just the one, so digest
+    * the whole jar or, when running from a classes directory, all classes of the package.
+    */
+   private static String codeSourceVersion(Class<?> type)
+   {
+      String version = type.getPackage().getImplementationVersion();
+      try
+      {
+         CodeSource source = type.getProtectionDomain().getCodeSource();
+         if(source == null || source.getLocation() == null || !"file".equals(source.getLocation().getProtocol()))
+            return version(type);
+         File location = new File(source.getLocation().toURI());
+         if(location.isFile())
+            return version + ":" + digest(location);
+         File dir = new File(location, type.getPackage().getName().replace('.', File.separatorChar));
+         if(!dir.isDirectory())
+            return version(type);
+         MessageDigest md = messageDigest();
+         digestClasses(md, dir);
+         return version + ":" + hex(md.digest());
+      }
+      catch(IOException e)
+      {
+         return version(type);
+      }
+      catch(URISyntaxException e)
+      {
+         return version(type);
+      }
+      catch(SecurityException e)
+      {
+         return version(type);
+      }
+   }
+
+   private static void digestClasses(MessageDigest md, File dir) throws IOException
+   {
+      File files[] = dir.listFiles();
+      if(files == null)
+         return;
+      Arrays.sort(files);
+      for(File file : files)
+      {
+         if(file.isDirectory())
+            digestClasses(md, file);
+         else if(file.getName().endsWith(".class"))
+         {
+            md.update(file.getName().getBytes("UTF-8"));
+            md.update(digest(file).getBytes("UTF-8"));
+         }
+      }
+   }
+
+   /**
+    * The implementation version alone is useless for snapshots, so mix in the
+    * byte code of the class itself.
+    */
+   static String version(Class<?> type)
+   {
+      String version = type.getPackage().getImplementationVersion();
+      try
+      {
+         InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class");
+         if(in == null)
+            return String.valueOf(version);
+         try
+         {
+            return version + ":" + digest(in);
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      catch(IOException e)
+      {
+         return String.valueOf(version);
+      }
+   }
+
+   private static String hex(byte[] bytes)
+   {
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for(byte b : bytes)
+      {
+         sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+         sb.append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+   }
+
+   private static MessageDigest messageDigest()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-1");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Compare with what's on disk and only write if it differs, so the mtime of
+    * untouched sources stays put.
+    *
+    * @return true if the file was written
+    */
+   static boolean writeIfChanged(File file, byte[] content) throws IOException
+   {
+      if(file.isFile() && file.length() == content.length)
+      {
+         InputStream in = new FileInputStream(file);
+         try
+         {
+            byte existing[] = new byte[content.length];
+            int off = 0;
+            int n;
+            while(off < existing.length && (n = in.read(existing, off, existing.length - off)) != -1)
+               off += n;
+            if(Arrays.equals(existing, content))
+               return false;
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      OutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(content);
+      }
+      finally
+      {
+         out.close();
+      }
+      return true;
+   }
+}
@@ -0,0 +1,188 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.util.List;
+
+/**
+ * Emits the merger of a generated type, which overlays one instance, for example
+ * from a vendor descriptor, on top of another.
+ *
+ * Single values of the override replace those of the base and child elements
+ * are merged recursively. Repeated elements which have a key, the first
+ * element named *-name, are merged by that key, others are replaced as a whole
+ * if the override has any.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class MergerEmitter
+{
+   private final String packageName;
+
+   MergerEmitter(String packageName)
+   {
+      this.packageName = packageName;
+   }
+
+   static String className(TypeInfo type)
+   {
+      return type.identifier + "Merger";
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      if(type.kind != TypeInfo.Kind.ELEMENTS)
+         throw new IllegalArgumentException("Can't merge " + type);
+
+      CodeWriter out = CodeWriter.open();
+      String className = className(type);
+      String impl = ImplementationEmitter.className(type);
+      List<PropertyInfo> properties = type.getAllProperties();
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("import org.jboss.beach.metadata.runtime.MergeSupport;");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated merger of {@link " + type.identifier + "}.");
+      out.println(" */");
+      out.println("public final class " + className);
+      out.println("{");
+      out.println("   private " + className + "()");
+      out.println("   {");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * Overlay the override on the base. Neither is modified, but the children only one");
+      out.println("    * of them has are shared with the result instead of copied. Lists are copied.");
+      out.println("    */");
+      out.println("   public static " + type.identifier + " merge(" + type.identifier + " base, " + type.identifier + " override)");
+      out.println("   {");
+      out.println("      if(base == null)");
+      out.println("         return override;");
+      out.println("      if(override == null)");
+      out.println("         return base;");
+      out.println("      " + impl + " result = new " + impl + "();");
+      for(PropertyInfo property : properties)
+      {
+         String s = property.getIdentifier();
+         String args = "base.get" + s + "(), override.get" + s + "()";
+         if(property.collection)
+            args = ImplementationEmitter.peek(type, property, "base") + ", " + ImplementationEmitter.peek(type, property, "override");
+         if(property.collection && key(property) != null)
+            out.println("      result.set" + s + "(merge" + s + "(" + args + "));");
+         else if(!property.collection && isMergeable(property))
+            out.println("      result.set" + s + "(" + property.itemType + "Merger.merge(" + args + "));");
+         else
+            out.println("      result.set" + s + "(MergeSupport.replace(" + args + "));");
+      }
+      out.println("      return result;");
+      out.println("   }");
+      for(PropertyInfo property : properties)
+      {
+         PropertyInfo key = property.collection ? key(property) : null;
+         if(key != null)
+            emitKeyedMerge(out, property, key);
+      }
+      out.println("}");
+
+      return out.finish();
+   }
+
+   private static boolean isMergeable(PropertyInfo property)
+   {
+      return property.valueType != null && property.valueType.kind == TypeInfo.Kind.ELEMENTS;
+   }
+
+   /**
+    * @return the property of the items of a repeated element which identifies them or null
+    */
+   private static PropertyInfo key(PropertyInfo property)
+   {
+      if(!isMergeable(property))
+         return null;
+      for(PropertyInfo candidate : property.valueType.getAllProperties())
+      {
+         if(candidate.collection || candidate.attribute || !candidate.name.endsWith("-name"))
+            continue;
+         if(candidate.itemType.equals("String"))
+            return candidate;
+         if(candidate.valueType != null && candidate.valueType.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+            return candidate;
+      }
+      return null;
+   }
+
+   /**
+    * Items are matched with a linear scan, repeated elements are too short for
+    * anything else to pay off.
+    */
+   private static void emitKeyedMerge(CodeWriter out, PropertyInfo property, PropertyInfo key)
+   {
+      String s = property.getIdentifier();
+      String t = property.itemType;
+      out.println();
+      out.println("   private static " + property.type + " merge" + s + "(" + property.type + " base, " + property.type + " override)");
+      out.println("   {");
+      out.println("      if(base == null || base.isEmpty())");
+      out.println("         return org.jboss.beach.metadata.runtime.Lists.copy(override);");
+      out.println("      if(override == null || override.isEmpty())");
+      out.println("         return org.jboss.beach.metadata.runtime.Lists.copy(base);");
+      out.println("      " + property.type + " result = new java.util.ArrayList<" + t + ">(base.size() + override.size());");
+      out.println("      boolean merged[] = new boolean[override.size()];");
+      out.println("      for(" + t + " item : base)");
+      out.println("      {");
+      out.println("         String key = keyOf" + s + "(item);");
+      out.println("         if(key != null)");
+      out.println("         {");
+      out.println("            for(int i = 0; i < merged.length; i++)");
+      out.println("            {");
+      out.println("               if(!merged[i] && key.equals(keyOf" + s + "(override.get(i))))");
+      out.println("               {");
+      out.println("                  item = " + t + "Merger.merge(item, override.get(i));");
+      out.println("                  merged[i] = true;");
+      out.println("                  break;");
+      out.println("               }");
+      out.println("            }");
+      out.println("         }");
+      out.println("         result.add(item);");
+      out.println("      }");
+      out.println("      for(int i = 0; i < merged.length; i++)");
+      out.println("      {");
+      out.println("         if(!merged[i])");
+      out.println("            result.add(override.get(i));");
+      out.println("      }");
+      out.println("      return result;");
+      out.println("   }");
+      out.println();
+      out.println("   private static String keyOf" + s + "(" + t + " item)");
+      out.println("   {");
+      if(key.itemType.equals("String"))
+         out.println("      return item.get" + key.getIdentifier() + "();");
+      else
+      {
+         out.println("      " + key.itemType + " key = item.get" + key.getIdentifier() + "();");
+         out.println("      return key == null ? null : key.getValue();");
+      }
+      out.println("   }");
+   }
+}
@@ -0,0 +1,296 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Emits the StAX parser of a generated type or group.
+ *
+ * Child elements are dispatched on the hash code of their local name, which
+ * is as close to a switch on strings as Java 6 gets.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class ParserEmitter
+{
+   private final String packageName;
+
+   ParserEmitter(String packageName)
+   {
+      this.packageName = packageName;
+   }
+
+   static String className(TypeInfo type)
+   {
+      return type.identifier + "Parser";
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      CodeWriter out = CodeWriter.open();
+      // the body goes first, so only what it uses is imported
+      CodeWriter body = CodeWriter.open();
+      switch(type.kind)
+      {
+         case GROUP:
+            emitGroup(body, type);
+            break;
+         case ELEMENTS:
+            emitElements(body, type);
+            break;
+         case SIMPLE_CONTENT:
+            emitSimpleContent(body, type);
+            break;
+         default:
+            throw new IllegalArgumentException("Can't parse " + type);
+      }
+      String code = new String(body.finish());
+
+      out.println("package " + packageName + ";");
+      out.println();
+      // a group parser is called by the parsers of the types which use it, it is not an element parser itself
+      boolean parserSupport = code.contains("ParserSupport.");
+      if(type.kind != TypeInfo.Kind.GROUP)
+         out.println("import org.jboss.beach.metadata.runtime.ElementParser;");
+      if(parserSupport)
+         out.println("import org.jboss.beach.metadata.runtime.ParserSupport;");
+      if(type.kind != TypeInfo.Kind.GROUP || parserSupport)
+         out.println();
+      if(type.kind == TypeInfo.Kind.ELEMENTS)
+         out.println("import javax.xml.stream.XMLStreamConstants;");
+      out.println("import javax.xml.stream.XMLStreamException;");
+      out.println("import javax.xml.stream.XMLStreamReader;");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated parser of {@link " + type.identifier + "}.");
+      out.println(" */");
+      out.print(code);
+
+      return out.finish();
+   }
+
+   private void emitGroup(CodeWriter out, TypeInfo type)
+   {
+      out.println("public final class " + className(type));
+      out.println("{");
+      out.println("   private " + className(type) + "()");
+      out.println("   {");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * Parse the current element if it belongs to this group.");
+      out.println("    *");
+      out.println("    * @return false if the element is not part of this group");
+      out.println("    */");
+      out.println("   public static boolean parseElement(XMLStreamReader reader, " + type.identifier + " target) throws XMLStreamException");
+      out.println("   {");
+      emitDispatch(out, type.properties, "      ", "return true;");
+      out.println("      return false;");
+      out.println("   }");
+      emitEnumReaders(out, type.properties);
+      out.println("}");
+   }
+
+   private void emitElements(CodeWriter out, TypeInfo type)
+   {
+      String impl = ImplementationEmitter.className(type);
+      emitHeader(out, type, impl);
+      out.println("   public static void read(XMLStreamReader reader, " + impl + " target) throws XMLStreamException");
+      out.println("   {");
+      out.println("      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)");
+      out.println("      {");
+      emitDispatch(out, type.properties, "         ", "continue;");
+      out.println("         throw ParserSupport.unexpectedElement(reader);");
+      out.println("      }");
+      out.println("   }");
+      emitEnumReaders(out, type.properties);
+      out.println("}");
+   }
+
+   private void emitSimpleContent(CodeWriter out, TypeInfo type)
+   {
+      String impl = ImplementationEmitter.className(type);
+      emitHeader(out, type, impl);
+      out.println("   public static void read(XMLStreamReader reader, " + impl + " target) throws XMLStreamException");
+      out.println("   {");
+      out.println("      for(int i = 0; i < reader.getAttributeCount(); i++)");
+      out.println("      {");
+      out.println("         String localName = reader.getAttributeLocalName(i);");
+      String prefix = "";
+      for(PropertyInfo attribute : type.properties)
+      {
+         out.println("         " + prefix + "if(localName.equals(\"" + attribute.name + "\"))");
+         out.println("            target.set" + attribute.getIdentifier() + "(ParserSupport.getAttributeValue(reader, i));");
+         prefix = "else ";
+      }
+      out.println("      }");
+      out.println("      target.setValue(ParserSupport.readString(reader));");
+      out.println("   }");
+      out.println("}");
+   }
+
+   private static void emitHeader(CodeWriter out, TypeInfo type, String impl)
+   {
+      String className = className(type);
+      out.println("public final class " + className + " implements ElementParser<" + impl + ">");
+      out.println("{");
+      out.println("   public static final " + className + " INSTANCE = new " + className + "();");
+      out.println();
+      out.println("   private " + className + "()");
+      out.println("   {");
+      out.println("   }");
+      out.println();
+      out.println("   public " + impl + " parse(XMLStreamReader reader) throws XMLStreamException");
+      out.println("   {");
+      out.println("      return read(reader);");
+      out.println("   }");
+      out.println();
+      out.println("   public static " + impl + " read(XMLStreamReader reader) throws XMLStreamException");
+      out.println("   {");
+      out.println("      " + impl + " result = new " + impl + "();");
+      out.println("      read(reader, result);");
+      out.println("      return result;");
+      out.println("   }");
+      out.println();
+   }
+
+   /**
+    * Read the enum values through their generated lookup instead of valueOf, which
+    * throws on anything it doesn't know.
+    */
+   private static void emitEnumReaders(CodeWriter out, List<PropertyInfo> properties)
+   {
+      Set<String> done = new HashSet<String>();
+      for(PropertyInfo property : properties)
+      {
+         TypeInfo valueType = property.valueType;
+         if(valueType == null || valueType.kind != TypeInfo.Kind.ENUM || !done.add(valueType.identifier))
+            continue;
+         out.println();
+         out.println("   private static " + property.itemType + " read" + valueType.identifier + "(XMLStreamReader reader) throws XMLStreamException");
+         out.println("   {");
+         out.println("      String s = ParserSupport.readText(reader);");
+         out.println("      " + property.itemType + " value = " + property.itemType + ".fromXml(s);");
+         out.println("      if(value == null)");
+         out.println("         throw ParserSupport.invalidValue(reader, s);");
+         out.println("      return value;");
+         out.println("   }");
+      }
+   }
+
+   /**
+    * Match the current element against the properties, falling through if none matches.
+    */
+   private void emitDispatch(CodeWriter out, List<PropertyInfo> properties, String outer, String matched)
+   {
+      Map<Integer, List<PropertyInfo>> cases = new TreeMap<Integer, List<PropertyInfo>>();
+      List<PropertyInfo> groups = new ArrayList<PropertyInfo>();
+      for(PropertyInfo property : properties)
+      {
+         if(property.group != null)
+         {
+            groups.add(property);
+            continue;
+         }
+         Integer hash = property.name.hashCode();
+         List<PropertyInfo> list = cases.get(hash);
+         if(list == null)
+         {
+            list = new ArrayList<PropertyInfo>();
+            cases.put(hash, list);
+         }
+         list.add(property);
+      }
+
+      String indent = outer + "      ";
+      if(!cases.isEmpty())
+      {
+         out.println(outer + "String localName = reader.getLocalName();");
+         out.println(outer + "switch(localName.hashCode())");
+         out.println(outer + "{");
+         for(Map.Entry<Integer, List<PropertyInfo>> entry : cases.entrySet())
+         {
+            out.println(outer + "   case " + entry.getKey() + ":");
+            for(PropertyInfo property : entry.getValue())
+            {
+               out.println(indent + "if(localName.equals(\"" + property.name + "\"))");
+               out.println(indent + "{");
+               if(property.collection)
+                  out.println(indent + "   target.get" + property.getIdentifier() + "().add(" + value(property) + ");");
+               else
+                  out.println(indent + "   target.set" + property.getIdentifier() + "(" + value(property) + ");");
+               out.println(indent + "   " + matched);
+               out.println(indent + "}");
+            }
+            out.println(indent + "break;");
+         }
+         out.println(outer + "}");
+      }
+      for(PropertyInfo group : groups)
+      {
+         out.println(outer + "if(" + group.type + "Parser.parseElement(reader, target))");
+         out.println(outer + "   " + matched);
+      }
+   }
+
+   /**
+    * @return the expression which reads the value of the current element
+    */
+   private static String value(PropertyInfo property)
+   {
+      TypeInfo valueType = property.valueType;
+      if(valueType != null)
+      {
+         switch(valueType.kind)
+         {
+            case ELEMENTS:
+            case SIMPLE_CONTENT:
+               return property.itemType + "Parser.read(reader)";
+            case ENUM:
+               return "read" + property.valueType.identifier + "(reader)";
+         }
+      }
+      String type = property.itemType;
+      String text = "ParserSupport.readText(reader)";
+      if(type.equals("String"))
+         return "ParserSupport.readString(reader)";
+      if(type.equals("Boolean"))
+         return "ParserSupport.parseBoolean(reader, " + text + ")";
+      if(type.equals("Integer"))
+         return "ParserSupport.parseInt(reader, " + text + ")";
+      if(type.equals("Long"))
+         return "ParserSupport.parseLong(reader, " + text + ")";
+      if(type.equals("java.net.URI"))
+         return "ParserSupport.parseURI(reader, " + text + ")";
+      if(type.equals("java.util.List<java.net.URI>"))
+         return "ParserSupport.parseURIList(reader, " + text + ")";
+      if(type.equals("javax.xml.namespace.QName"))
+         return "ParserSupport.readQName(reader)";
+      throw new IllegalStateException("Can't parse " + property + " of type " + type);
+   }
+}
@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An element or attribute of a generated type, or a reference to a group it extends.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class PropertyInfo
+{
+   /** the local name of the element or attribute */
+   final String name;
+   final String comment;
+   /** the declared Java type */
+   final String type;
+   /** the Java type of a single value, same as type unless it's a collection */
+   final String itemType;
+   final boolean collection;
+   final int minOccurs;
+   final QName xsdType;
+   final boolean attribute;
+   /** the namespace of a qualified attribute, empty otherwise */
+   final String attributeNamespace;
+   /** the group if this is a group reference */
+   final TypeInfo group;
+   /** what is generated for the element type, null for simple values */
+   final TypeInfo valueType;
+   /** the facets of the element type, only collected for the validators */
+   final List<FacetDefinition> facets = new ArrayList<FacetDefinition>();
+
+   private PropertyInfo(String name, String comment, String type, String itemType, boolean collection, int minOccurs, QName xsdType, boolean attribute, String attributeNamespace, TypeInfo group, TypeInfo valueType)
+   {
+      this.name = name;
+      this.comment = comment;
+      this.type = type;
+      this.itemType = itemType;
+      this.collection = collection;
+      this.minOccurs = minOccurs;
+      this.xsdType = xsdType;
+      this.attribute = attribute;
+      this.attributeNamespace = attributeNamespace;
+      this.group = group;
+      this.valueType = valueType;
+   }
+
+   static PropertyInfo attribute(String name, String namespaceURI, QName xsdType, boolean required)
+   {
+      assert name != null : "name is null";
+
+      return new PropertyInfo(name, null, "String", "String", false, required ? 1 : 0, xsdType, true, namespaceURI, null, null);
+   }
+
+   static PropertyInfo element(String name, String comment, String itemType, boolean collection, int minOccurs, QName xsdType, TypeInfo valueType)
+   {
+      assert name != null : "name is null";
+
+      String type = collection ? "java.util.List<" + itemType + ">" : itemType;
+      return new PropertyInfo(name, comment, type, itemType, collection, minOccurs, xsdType, false, null, null, valueType);
+   }
+
+   static PropertyInfo group(String type, TypeInfo group)
+   {
+      return new PropertyInfo(group.name.getLocalPart(), null, type, type, false, 1, group.name, false, null, group, null);
+   }
+
+   /**
+    * @return the Java identifier used in accessor names
+    */
+   String getIdentifier()
+   {
+      return Generator.javaIdentifier(name);
+   }
+
+   /**
+    * @return the Java identifier used for fields and parameters
+    */
+   String getVariable()
+   {
+      return Generator.normalize(name);
+   }
+
+   /**
+    * @return the primitive the value can be stored in or null
+    */
+   String getPrimitive()
+   {
+      if(collection)
+         return null;
+      if(itemType.equals("Boolean"))
+         return "boolean";
+      if(itemType.equals("Integer"))
+         return "int";
+      if(itemType.equals("Long"))
+         return "long";
+      return null;
+   }
+
+   @Override
+   public String toString()
+   {
+      return name + " " + type;
+   }
+}
@@ -0,0 +1,502 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.AttributeDefinition;
+import org.jboss.beach.metadata.generator.model.ComplexTypeDefinition;
+import org.jboss.beach.metadata.generator.model.Definition;
+import org.jboss.beach.metadata.generator.model.ElementParticle;
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+import org.jboss.beach.metadata.generator.model.GroupDefinition;
+import org.jboss.beach.metadata.generator.model.GroupRefParticle;
+import org.jboss.beach.metadata.generator.model.Particle;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.jboss.beach.metadata.generator.model.SimpleContentDefinition;
+import org.jboss.beach.metadata.generator.model.SimpleTypeDefinition;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the schema models, and the Java types resolved from them, on disk, so
+ * unchanged schemas do not have to be read again.
+ *
+ * Entries are keyed on the versions of the generator, the reader and this
+ * cache, the schema path and the SHA-1 of its content. Anything which can't be
+ * read is treated as a miss and anything which can't be written is skipped, the
+ * cache is only an optimization.
+ *
+ * The entries are in a plain binary format, because object serialization
+ * takes longer to warm up than reading the schema does.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class SchemaCache
+{
+   private static final byte GROUP = 0;
+   private static final byte COMPLEX_TYPE = 1;
+   private static final byte SIMPLE_TYPE = 2;
+   private static final byte ELEMENT = 0;
+   private static final byte GROUP_REF = 1;
+
+   private final File dir;
+   private final String version = Manifest.generatorVersion() + ":" + Manifest.version(SchemaCache.class);
+   // schema -> key, of every schema which went through this cache
+   private final Map<SchemaModel, String> keys = Collections.synchronizedMap(new IdentityHashMap<SchemaModel, String>());
+
+   SchemaCache(File dir)
+   {
+      if(dir == null)
+         throw new IllegalArgumentException("dir is null");
+      this.dir = dir;
+   }
+
+   /**
+    * @return the model of the schema, from the cache if possible
+    */
+   SchemaModel read(File file, SchemaReader reader) throws IOException
+   {
+      // a changed reader may produce a different model
+      String key = key(Manifest.version(reader.getClass()), file.getPath(), Manifest.digest(file));
+      File entry = new File(dir, key + ".model");
+      SchemaModel schema = null;
+      DataInputStream in = load(entry);
+      if(in != null)
+      {
+         try
+         {
+            schema = readSchema(in);
+         }
+         catch(IOException e)
+         {
+            // truncated, treat as a miss
+         }
+         catch(RuntimeException e)
+         {
+            // garbage, treat as a miss
+         }
+      }
+      if(schema == null)
+      {
+         schema = reader.read(file);
+         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+         writeSchema(new DataOutputStream(buffer), schema);
+         store(entry, buffer.toByteArray());
+      }
+      keys.put(schema, key);
+      return schema;
+   }
+
+   /**
+    * @return the key of a schema read through this cache or null
+    */
+   String keyOf(SchemaModel schema)
+   {
+      return keys.get(schema);
+   }
+
+   /**
+    * @param reader the reader the schemas the Java types depend on were read with
+    * @return the Java types stored under the key or null, also if a schema they depend on changed
+    */
+   Map<QName, String> loadJavaTypes(String key, SchemaReader reader)
+   {
+      try
+      {
+         DataInputStream in = load(new File(dir, key + ".types"));
+         if(in == null)
+            return null;
+         String readerVersion = Manifest.version(reader.getClass());
+         for(int i = in.readInt(); i > 0; i--)
+         {
+            String path = readString(in);
+            if(!readString(in).equals(key(readerVersion, path, Manifest.digest(new File(path)))))
+               return null;
+         }
+         int n = in.readInt();
+         Map<QName, String> javaTypes = new HashMap<QName, String>();
+         for(int i = 0; i < n; i++)
+            javaTypes.put(readQName(in), readString(in));
+         return javaTypes;
+      }
+      catch(IOException e)
+      {
+         return null;
+      }
+      catch(RuntimeException e)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * @param dependencies the schemas which are not part of the key, but were consulted for the Java types
+    */
+   void storeJavaTypes(String key, Map<QName, String> javaTypes, Collection<SchemaModel> dependencies)
+   {
+      // a snapshot, the map may be concurrent
+      Map<QName, String> copy = new HashMap<QName, String>(javaTypes);
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(buffer);
+      try
+      {
+         out.writeInt(dependencies.size());
+         for(SchemaModel dependency : dependencies)
+         {
+            String dependencyKey = keyOf(dependency);
+            if(dependencyKey == null)
+               return;
+            writeString(out, dependency.getLocation());
+            writeString(out, dependencyKey);
+         }
+         out.writeInt(copy.size());
+         for(Map.Entry<QName, String> entry : copy.entrySet())
+         {
+            writeQName(out, entry.getKey());
+            writeString(out, entry.getValue());
+         }
+      }
+      catch(IOException e)
+      {
+         // can't happen on a byte array
+         throw new RuntimeException(e);
+      }
+      store(new File(dir, key + ".types"), buffer.toByteArray());
+   }
+
+   String key(String... parts)
+   {
+      StringBuilder sb = new StringBuilder(version);
+      for(String part : parts)
+         sb.append('\0').append(part);
+      return Manifest.digest(sb.toString().getBytes());
+   }
+
+   private static SchemaModel readSchema(DataInputStream in) throws IOException
+   {
+      String location = readString(in);
+      String targetNamespace = readString(in);
+      List<String> includes = new ArrayList<String>();
+      for(int i = in.readInt(); i > 0; i--)
+         includes.add(readString(in));
+      Map<String, String> imports = new LinkedHashMap<String, String>();
+      for(int i = in.readInt(); i > 0; i--)
+         imports.put(readString(in), readString(in));
+      List<Definition> definitions = new ArrayList<Definition>();
+      for(int i = in.readInt(); i > 0; i--)
+         definitions.add(readDefinition(in));
+      List<ElementParticle> elements = new ArrayList<ElementParticle>();
+      for(int i = in.readInt(); i > 0; i--)
+         elements.add(readElement(in));
+      return new SchemaModel(location, targetNamespace, includes, imports, definitions, elements);
+   }
+
+   private static void writeSchema(DataOutputStream out, SchemaModel schema) throws IOException
+   {
+      writeString(out, schema.getLocation());
+      writeString(out, schema.getTargetNamespace());
+      out.writeInt(schema.getIncludes().size());
+      for(String include : schema.getIncludes())
+         writeString(out, include);
+      out.writeInt(schema.getImports().size());
+      for(Map.Entry<String, String> entry : schema.getImports().entrySet())
+      {
+         writeString(out, entry.getKey());
+         writeString(out, entry.getValue());
+      }
+      out.writeInt(schema.getDefinitions().size());
+      for(Definition definition : schema.getDefinitions())
+         writeDefinition(out, definition);
+      out.writeInt(schema.getElements().size());
+      for(ElementParticle element : schema.getElements())
+         writeElement(out, element);
+   }
+
+   private static Definition readDefinition(DataInputStream in) throws IOException
+   {
+      byte kind = in.readByte();
+      String name = readString(in);
+      String documentation = readString(in);
+      switch(kind)
+      {
+         case GROUP:
+            return new GroupDefinition(name, documentation, readParticles(in));
+         case COMPLEX_TYPE:
+            List<Particle> particles = readParticles(in);
+            SimpleContentDefinition simpleContent = null;
+            if(in.readBoolean())
+            {
+               boolean extension = in.readBoolean();
+               QName base = readQName(in);
+               List<AttributeDefinition> attributes = new ArrayList<AttributeDefinition>();
+               for(int i = in.readInt(); i > 0; i--)
+                  attributes.add(new AttributeDefinition(readString(in), readQName(in), readQName(in), in.readBoolean()));
+               simpleContent = new SimpleContentDefinition(extension, base, attributes, readFacets(in));
+            }
+            return new ComplexTypeDefinition(name, documentation, particles, simpleContent);
+         case SIMPLE_TYPE:
+            return new SimpleTypeDefinition(name, documentation, readQName(in), readFacets(in), readQName(in));
+         default:
+            throw new IOException("Unknown definition " + kind);
+      }
+   }
+
+   private static void writeDefinition(DataOutputStream out, Definition definition) throws IOException
+   {
+      if(definition instanceof GroupDefinition)
+      {
+         out.writeByte(GROUP);
+         writeString(out, definition.getName());
+         writeString(out, definition.getDocumentation());
+         writeParticles(out, ((GroupDefinition) definition).getParticles());
+      }
+      else if(definition instanceof ComplexTypeDefinition)
+      {
+         ComplexTypeDefinition type = (ComplexTypeDefinition) definition;
+         out.writeByte(COMPLEX_TYPE);
+         writeString(out, type.getName());
+         writeString(out, type.getDocumentation());
+         writeParticles(out, type.getParticles());
+         SimpleContentDefinition content = type.getSimpleContent();
+         out.writeBoolean(content != null);
+         if(content != null)
+         {
+            out.writeBoolean(content.isExtension());
+            writeQName(out, content.getBase());
+            out.writeInt(content.getAttributes().size());
+            for(AttributeDefinition attribute : content.getAttributes())
+            {
+               writeString(out, attribute.getName());
+               writeQName(out, attribute.getRef());
+               writeQName(out, attribute.getType());
+               out.writeBoolean(attribute.isRequired());
+            }
+            writeFacets(out, content.getFacets());
+         }
+      }
+      else
+      {
+         SimpleTypeDefinition type = (SimpleTypeDefinition) definition;
+         out.writeByte(SIMPLE_TYPE);
+         writeString(out, type.getName());
+         writeString(out, type.getDocumentation());
+         writeQName(out, type.getRestrictionBase());
+         writeFacets(out, type.getFacets());
+         writeQName(out, type.getListItemType());
+      }
+   }
+
+   /**
+    * @return the particles, or null which is written as a negative size
+    */
+   private static List<Particle> readParticles(DataInputStream in) throws IOException
+   {
+      int n = in.readInt();
+      if(n < 0)
+         return null;
+      List<Particle> particles = new ArrayList<Particle>(n);
+      for(int i = 0; i < n; i++)
+      {
+         byte kind = in.readByte();
+         if(kind == ELEMENT)
+            particles.add(readElement(in));
+         else if(kind == GROUP_REF)
+            particles.add(new GroupRefParticle(readQName(in)));
+         else
+            throw new IOException("Unknown particle " + kind);
+      }
+      return particles;
+   }
+
+   private static void writeParticles(DataOutputStream out, List<Particle> particles) throws IOException
+   {
+      if(particles == null)
+      {
+         out.writeInt(-1);
+         return;
+      }
+      out.writeInt(particles.size());
+      for(Particle particle : particles)
+      {
+         if(particle instanceof ElementParticle)
+         {
+            out.writeByte(ELEMENT);
+            writeElement(out, (ElementParticle) particle);
+         }
+         else
+         {
+            out.writeByte(GROUP_REF);
+            writeQName(out, ((GroupRefParticle) particle).getRef());
+         }
+      }
+   }
+
+   private static ElementParticle readElement(DataInputStream in) throws IOException
+   {
+      return new ElementParticle(readString(in), readQName(in), in.readInt(), in.readInt(), readString(in));
+   }
+
+   private static void writeElement(DataOutputStream out, ElementParticle element) throws IOException
+   {
+      writeString(out, element.getName());
+      writeQName(out, element.getType());
+      out.writeInt(element.getMinOccurs());
+      out.writeInt(element.getMaxOccurs());
+      writeString(out, element.getDocumentation());
+   }
+
+   private static List<FacetDefinition> readFacets(DataInputStream in) throws IOException
+   {
+      List<FacetDefinition> facets = new ArrayList<FacetDefinition>();
+      for(int i = in.readInt(); i > 0; i--)
+         facets.add(new FacetDefinition(readString(in), readString(in)));
+      return facets;
+   }
+
+   private static void writeFacets(DataOutputStream out, List<FacetDefinition> facets) throws IOException
+   {
+      out.writeInt(facets.size());
+      for(FacetDefinition facet : facets)
+      {
+         writeString(out, facet.getKind());
+         writeString(out, facet.getValue());
+      }
+   }
+
+   private static QName readQName(DataInputStream in) throws IOException
+   {
+      String namespaceURI = readString(in);
+      if(namespaceURI == null)
+         return null;
+      return new QName(namespaceURI, readString(in));
+   }
+
+   private static void writeQName(DataOutputStream out, QName name) throws IOException
+   {
+      if(name == null)
+      {
+         writeString(out, null);
+         return;
+      }
+      writeString(out, name.getNamespaceURI());
+      writeString(out, name.getLocalPart());
+   }
+
+   /**
+    * Documentation easily exceeds what writeUTF can take, so the length is an int.
+    */
+   private static String readString(DataInputStream in) throws IOException
+   {
+      int n = in.readInt();
+      if(n < 0)
+         return null;
+      byte b[] = new byte[n];
+      in.readFully(b);
+      return new String(b, "UTF-8");
+   }
+
+   private static void writeString(DataOutputStream out, String s) throws IOException
+   {
+      if(s == null)
+      {
+         out.writeInt(-1);
+         return;
+      }
+      byte b[] = s.getBytes("UTF-8");
+      out.writeInt(b.length);
+      out.write(b);
+   }
+
+   /**
+    * @return the entry or null if there is none
+    */
+   private static DataInputStream load(File file) throws IOException
+   {
+      if(!file.isFile())
+         return null;
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         byte b[] = new byte[(int) file.length()];
+         int off = 0;
+         int n;
+         while(off < b.length && (n = in.read(b, off, b.length - off)) != -1)
+            off += n;
+         return new DataInputStream(new ByteArrayInputStream(b, 0, off));
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   /**
+    * Write to a temporary file first, so a concurrent reader never sees half an entry.
+    */
+   private void store(File file, byte[] content)
+   {
+      try
+      {
+         dir.mkdirs();
+         File tmp = File.createTempFile("entry", ".tmp", dir);
+         try
+         {
+            OutputStream out = new FileOutputStream(tmp);
+            try
+            {
+               out.write(content);
+            }
+            finally
+            {
+               out.close();
+            }
+            // if it fails someone else got there first
+            tmp.renameTo(file);
+         }
+         finally
+         {
+            tmp.delete();
+         }
+      }
+      catch(IOException e)
+      {
+         // skip it
+      }
+   }
+}
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.Definition;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+
+import javax.xml.namespace.QName;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Symbol table of all named groups, complex types and simple types
+ * in a set of schemas, keyed on their qualified name.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class SchemaIndex
+{
+   static class Entry
+   {
+      final SchemaModel schema;
+      final Definition definition;
+
+      Entry(SchemaModel schema, Definition definition)
+      {
+         this.schema = schema;
+         this.definition = definition;
+      }
+   }
+
+   private final Map<QName, Entry> entries = new HashMap<QName, Entry>();
+
+   SchemaIndex(Collection<SchemaModel> schemas)
+   {
+      for(SchemaModel schema : schemas)
+         add(schema);
+   }
+
+   Entry get(QName name)
+   {
+      return entries.get(name);
+   }
+
+   void add(SchemaModel schema)
+   {
+      String namespaceURI = schema.getTargetNamespace();
+      for(Definition definition : schema.getDefinitions())
+      {
+         QName qname = new QName(namespaceURI, definition.getName());
+         // first definition wins
+         if(!entries.containsKey(qname))
+            entries.put(qname, new Entry(schema, definition));
+      }
+   }
+}
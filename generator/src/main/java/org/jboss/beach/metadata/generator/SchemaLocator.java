@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+
+import javax.xml.namespace.QName;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds definitions in the given schemas and only loads an included or imported
+ * schema once a definition in its namespace can't be found in what is loaded already.
+ *
+ * Imports are looked up in the catalog first and fall back to their schema location,
+ * a namespace in the catalog is found even if nothing imports it.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class SchemaLocator
+{
+   interface Loader
+   {
+      SchemaModel load(File file) throws IOException;
+   }
+
+   private static class Candidate
+   {
+      final String namespaceURI;
+      // null if there is no location
+      final File file;
+
+      Candidate(String namespaceURI, File file)
+      {
+         // like QName does
+         this.namespaceURI = namespaceURI != null ? namespaceURI : "";
+         this.file = file;
+      }
+   }
+
+   private final Loader loader;
+   private final Map<String, File> catalog;
+   private final SchemaIndex index;
+   // canonical path -> schema
+   private final Map<String, SchemaModel> schemas = new HashMap<String, SchemaModel>();
+   private final List<SchemaModel> located = new ArrayList<SchemaModel>();
+   // the schemas which could be loaded, in the order they were found
+   private final LinkedList<Candidate> candidates = new LinkedList<Candidate>();
+
+   /**
+    * @param schemas the schemas which are loaded already, keyed on their file
+    * @param catalog namespace -> file
+    */
+   SchemaLocator(Map<File, SchemaModel> schemas, Map<String, File> catalog, Loader loader)
+   {
+      this.loader = loader;
+      this.catalog = catalog;
+      this.index = new SchemaIndex(schemas.values());
+      for(Map.Entry<File, SchemaModel> entry : schemas.entrySet())
+         loaded(entry.getKey(), entry.getValue());
+      for(Map.Entry<String, File> entry : catalog.entrySet())
+         candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+   }
+
+   /**
+    * @return the definition or null if none of the reachable schemas has it
+    */
+   SchemaIndex.Entry get(QName name)
+   {
+      SchemaIndex.Entry entry = index.get(name);
+      if(entry != null)
+         return entry;
+      List<Candidate> missing = new ArrayList<Candidate>();
+      Iterator<Candidate> it = candidates.iterator();
+      while(it.hasNext())
+      {
+         Candidate candidate = it.next();
+         if(!name.getNamespaceURI().equals(candidate.namespaceURI))
+            continue;
+         it.remove();
+         if(candidate.file == null || !candidate.file.isFile())
+         {
+            missing.add(candidate);
+            continue;
+         }
+         if(schemas.containsKey(canonicalPath(candidate.file)))
+            continue;
+         SchemaModel schema;
+         try
+         {
+            schema = loader.load(candidate.file);
+         }
+         catch(IOException e)
+         {
+            throw new RuntimeException("Failed to load " + candidate.file + " for " + name, e);
+         }
+         located.add(schema);
+         index.add(schema);
+         loaded(candidate.file, schema);
+         entry = index.get(name);
+         if(entry != null)
+            return entry;
+         // the new schema may have added candidates
+         it = candidates.iterator();
+      }
+      if(!missing.isEmpty())
+      {
+         Candidate candidate = missing.get(0);
+         throw new RuntimeException("Can't locate the schema " + (candidate.file != null ? candidate.file + " " : "") + "of namespace " + candidate.namespaceURI + " for " + name + ", add it to the catalog");
+      }
+      return null;
+   }
+
+   /**
+    * @return the schemas which were loaded on demand, in the order they were loaded
+    */
+   Collection<SchemaModel> getLocated()
+   {
+      return located;
+   }
+
+   private void loaded(File file, SchemaModel schema)
+   {
+      schemas.put(canonicalPath(file), schema);
+      File dir = file.getParentFile();
+      for(String location : schema.getIncludes())
+         candidates.add(new Candidate(schema.getTargetNamespace(), new File(dir, location)));
+      for(Map.Entry<String, String> entry : schema.getImports().entrySet())
+      {
+         String namespaceURI = entry.getKey();
+         File location = catalog.get(namespaceURI);
+         if(location == null && entry.getValue() != null)
+            location = new File(dir, entry.getValue());
+         candidates.add(new Candidate(namespaceURI, location));
+      }
+   }
+
+   private static String canonicalPath(File file)
+   {
+      try
+      {
+         return file.getCanonicalPath();
+      }
+      catch(IOException e)
+      {
+         return file.getAbsolutePath();
+      }
+   }
+}
@@ -0,0 +1,403 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.AttributeDefinition;
+import org.jboss.beach.metadata.generator.model.ComplexTypeDefinition;
+import org.jboss.beach.metadata.generator.model.Definition;
+import org.jboss.beach.metadata.generator.model.ElementParticle;
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+import org.jboss.beach.metadata.generator.model.GroupDefinition;
+import org.jboss.beach.metadata.generator.model.GroupRefParticle;
+import org.jboss.beach.metadata.generator.model.Particle;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.jboss.beach.metadata.generator.model.SimpleContentDefinition;
+import org.jboss.beach.metadata.generator.model.SimpleTypeDefinition;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams through a schema document and only picks up what the generator needs.
+ * Everything else, most notably the bulk of the documentation, is skipped
+ * without ever being materialized.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class StaxSchemaReader implements SchemaReader
+{
+   private static final String XSD = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+
+   private static final Set<String> FACETS = new HashSet<String>(Arrays.asList(
+      "enumeration", "fractionDigits", "length", "maxExclusive", "maxInclusive", "maxLength",
+      "minExclusive", "minInclusive", "minLength", "pattern", "totalDigits", "whiteSpace"));
+
+   private final XMLInputFactory factory;
+
+   public StaxSchemaReader()
+   {
+      factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+   }
+
+   public SchemaModel read(File file) throws IOException
+   {
+      InputStream in = new BufferedInputStream(new FileInputStream(file));
+      try
+      {
+         XMLStreamReader reader;
+         // the factory itself is not guaranteed to be thread safe
+         synchronized(factory)
+         {
+            reader = factory.createXMLStreamReader(file.toURI().toString(), in);
+         }
+         try
+         {
+            reader.nextTag();
+            return readSchema(file, reader);
+         }
+         finally
+         {
+            reader.close();
+         }
+      }
+      catch(XMLStreamException e)
+      {
+         throw new IOException("Failed to read " + file + ": " + e.getMessage(), e);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private SchemaModel readSchema(File file, XMLStreamReader reader) throws XMLStreamException
+   {
+      expect(reader, "schema");
+      String targetNamespace = reader.getAttributeValue(null, "targetNamespace");
+      List<String> includes = new ArrayList<String>();
+      Map<String, String> imports = new LinkedHashMap<String, String>();
+      List<Definition> definitions = new ArrayList<Definition>();
+      List<ElementParticle> elements = new ArrayList<ElementParticle>();
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String localName = localName(reader);
+         if(localName.equals("include"))
+         {
+            includes.add(reader.getAttributeValue(null, "schemaLocation"));
+            skip(reader);
+         }
+         else if(localName.equals("import"))
+         {
+            imports.put(reader.getAttributeValue(null, "namespace"), reader.getAttributeValue(null, "schemaLocation"));
+            skip(reader);
+         }
+         else if(localName.equals("group"))
+            definitions.add(readGroup(reader));
+         else if(localName.equals("complexType"))
+            definitions.add(readComplexType(reader));
+         else if(localName.equals("simpleType"))
+            definitions.add(readSimpleType(reader));
+         else if(localName.equals("element"))
+            elements.add(readElement(reader, 1, 1));
+         else
+            // annotation, redefine, attribute, attributeGroup, notation
+            skip(reader);
+      }
+      return new SchemaModel(file.getPath(), targetNamespace, includes, imports, definitions, elements);
+   }
+
+   private GroupDefinition readGroup(XMLStreamReader reader) throws XMLStreamException
+   {
+      String name = reader.getAttributeValue(null, "name");
+      String documentation = null;
+      List<Particle> particles = new ArrayList<Particle>();
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String localName = localName(reader);
+         if(localName.equals("annotation"))
+            documentation = readAnnotation(reader);
+         else
+            readModelGroup(reader, particles, 1, 1);
+      }
+      return new GroupDefinition(name, documentation, particles);
+   }
+
+   private ComplexTypeDefinition readComplexType(XMLStreamReader reader) throws XMLStreamException
+   {
+      String name = reader.getAttributeValue(null, "name");
+      String documentation = null;
+      List<Particle> particles = null;
+      SimpleContentDefinition simpleContent = null;
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String localName = localName(reader);
+         if(localName.equals("annotation"))
+            documentation = readAnnotation(reader);
+         else if(localName.equals("sequence") || localName.equals("choice") || localName.equals("all"))
+         {
+            particles = new ArrayList<Particle>();
+            readModelGroup(reader, particles, 1, 1);
+         }
+         else if(localName.equals("simpleContent"))
+            simpleContent = readSimpleContent(reader);
+         else
+            // attributes on element content are not supported, complexContent is NYI
+            skip(reader);
+      }
+      return new ComplexTypeDefinition(name, documentation, particles, simpleContent);
+   }
+
+   private SimpleContentDefinition readSimpleContent(XMLStreamReader reader) throws XMLStreamException
+   {
+      SimpleContentDefinition result = null;
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String localName = localName(reader);
+         if(localName.equals("extension") || localName.equals("restriction"))
+         {
+            QName base = qname(reader, reader.getAttributeValue(null, "base"));
+            List<AttributeDefinition> attributes = new ArrayList<AttributeDefinition>();
+            List<FacetDefinition> facets = new ArrayList<FacetDefinition>();
+            while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+               String child = localName(reader);
+               if(child.equals("attribute"))
+                  attributes.add(readAttribute(reader));
+               else if(FACETS.contains(child))
+                  facets.add(readFacet(reader));
+               else
+                  skip(reader);
+            }
+            result = new SimpleContentDefinition(localName.equals("extension"), base, attributes, facets);
+         }
+         else
+            skip(reader);
+      }
+      return result;
+   }
+
+   private SimpleTypeDefinition readSimpleType(XMLStreamReader reader) throws XMLStreamException
+   {
+      String name = reader.getAttributeValue(null, "name");
+      String documentation = null;
+      QName restrictionBase = null;
+      List<FacetDefinition> facets = new ArrayList<FacetDefinition>();
+      QName listItemType = null;
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String localName = localName(reader);
+         if(localName.equals("annotation"))
+            documentation = readAnnotation(reader);
+         else if(localName.equals("restriction"))
+         {
+            restrictionBase = qname(reader, reader.getAttributeValue(null, "base"));
+            while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+               if(FACETS.contains(localName(reader)))
+                  facets.add(readFacet(reader));
+               else
+                  skip(reader);
+            }
+         }
+         else if(localName.equals("list"))
+         {
+            listItemType = qname(reader, reader.getAttributeValue(null, "itemType"));
+            skip(reader);
+         }
+         else
+            // union
+            skip(reader);
+      }
+      return new SimpleTypeDefinition(name, documentation, restrictionBase, facets, listItemType);
+   }
+
+   /**
+    * Flatten a sequence, choice or all into particles.
+    */
+   private void readModelGroup(XMLStreamReader reader, List<Particle> particles, int minOccurs, int maxOccurs) throws XMLStreamException
+   {
+      String kind = localName(reader);
+      if(kind.equals("choice") || minOccurs(reader) == 0)
+         minOccurs = 0;
+      if(maxOccurs(reader) == ElementParticle.UNBOUNDED)
+         maxOccurs = ElementParticle.UNBOUNDED;
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String localName = localName(reader);
+         if(localName.equals("element"))
+            particles.add(readElement(reader, minOccurs, maxOccurs));
+         else if(localName.equals("group"))
+         {
+            particles.add(new GroupRefParticle(qname(reader, reader.getAttributeValue(null, "ref"))));
+            skip(reader);
+         }
+         else if(localName.equals("sequence") || localName.equals("choice") || localName.equals("all"))
+            readModelGroup(reader, particles, minOccurs, maxOccurs);
+         else
+            // annotation, any
+            skip(reader);
+      }
+   }
+
+   private ElementParticle readElement(XMLStreamReader reader, int groupMinOccurs, int groupMaxOccurs) throws XMLStreamException
+   {
+      String name = reader.getAttributeValue(null, "name");
+      QName type = qname(reader, reader.getAttributeValue(null, "type"));
+      int minOccurs = groupMinOccurs == 0 ? 0 : minOccurs(reader);
+      int maxOccurs = groupMaxOccurs == ElementParticle.UNBOUNDED ? ElementParticle.UNBOUNDED : maxOccurs(reader);
+      String documentation = null;
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         if(localName(reader).equals("annotation"))
+            documentation = readAnnotation(reader);
+         else
+            skip(reader);
+      }
+      return new ElementParticle(name, type, minOccurs, maxOccurs, documentation);
+   }
+
+   private AttributeDefinition readAttribute(XMLStreamReader reader) throws XMLStreamException
+   {
+      String name = reader.getAttributeValue(null, "name");
+      QName ref = qname(reader, reader.getAttributeValue(null, "ref"));
+      QName type = qname(reader, reader.getAttributeValue(null, "type"));
+      boolean required = "required".equals(reader.getAttributeValue(null, "use"));
+      skip(reader);
+      return new AttributeDefinition(name, ref, type, required);
+   }
+
+   private FacetDefinition readFacet(XMLStreamReader reader) throws XMLStreamException
+   {
+      FacetDefinition facet = new FacetDefinition(localName(reader), reader.getAttributeValue(null, "value"));
+      skip(reader);
+      return facet;
+   }
+
+   /**
+    * @return the text of the first documentation up to its first child element
+    */
+   private String readAnnotation(XMLStreamReader reader) throws XMLStreamException
+   {
+      String documentation = null;
+      while(reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         if(documentation == null && localName(reader).equals("documentation"))
+         {
+            StringBuilder sb = new StringBuilder();
+            int event;
+            while((event = reader.next()) == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+               || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.COMMENT)
+            {
+               if(event != XMLStreamConstants.COMMENT)
+                  sb.append(reader.getText());
+            }
+            documentation = sb.toString();
+            if(event == XMLStreamConstants.START_ELEMENT)
+            {
+               skip(reader);
+               skip(reader);
+            }
+         }
+         else
+            skip(reader);
+      }
+      return documentation;
+   }
+
+   private static void expect(XMLStreamReader reader, String localName) throws XMLStreamException
+   {
+      if(!XSD.equals(reader.getNamespaceURI()) || !localName.equals(reader.getLocalName()))
+         throw new XMLStreamException("Expected xsd:" + localName + " but got " + reader.getName(), reader.getLocation());
+   }
+
+   private static String localName(XMLStreamReader reader) throws XMLStreamException
+   {
+      if(!XSD.equals(reader.getNamespaceURI()))
+         throw new XMLStreamException("Unexpected element " + reader.getName(), reader.getLocation());
+      return reader.getLocalName();
+   }
+
+   private static int maxOccurs(XMLStreamReader reader)
+   {
+      String value = reader.getAttributeValue(null, "maxOccurs");
+      if(value == null)
+         return 1;
+      if(value.equals("unbounded"))
+         return ElementParticle.UNBOUNDED;
+      return Integer.parseInt(value.trim());
+   }
+
+   private static int minOccurs(XMLStreamReader reader)
+   {
+      String value = reader.getAttributeValue(null, "minOccurs");
+      if(value == null)
+         return 1;
+      return Integer.parseInt(value.trim());
+   }
+
+   private static QName qname(XMLStreamReader reader, String value)
+   {
+      if(value == null)
+         return null;
+      value = value.trim();
+      int i = value.indexOf(':');
+      String prefix = i < 0 ? XMLConstants.DEFAULT_NS_PREFIX : value.substring(0, i);
+      String namespaceURI = reader.getNamespaceContext().getNamespaceURI(prefix);
+      if(namespaceURI == null)
+         namespaceURI = XMLConstants.NULL_NS_URI;
+      return new QName(namespaceURI, value.substring(i + 1), prefix);
+   }
+
+   /**
+    * Skip to the end of the current element.
+    */
+   private static void skip(XMLStreamReader reader) throws XMLStreamException
+   {
+      int depth = 1;
+      while(depth > 0)
+      {
+         int event = reader.next();
+         if(event == XMLStreamConstants.START_ELEMENT)
+            depth++;
+         else if(event == XMLStreamConstants.END_ELEMENT)
+            depth--;
+      }
+   }
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What is generated for a group or a type.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class TypeInfo
+{
+   enum Kind
+   {
+      /** a named group, which becomes an interface to extend */
+      GROUP,
+      /** a complex type with element content */
+      ELEMENTS,
+      /** a complex type with simple content and attributes */
+      SIMPLE_CONTENT,
+      /** a restriction with enumeration facets */
+      ENUM
+   }
+
+   final Kind kind;
+   final QName name;
+   final String identifier;
+   final String documentation;
+
+   /**
+    * Elements and group references in sequence order or, for simple content,
+    * the attributes.
+    */
+   final List<PropertyInfo> properties = new ArrayList<PropertyInfo>();
+
+   /**
+    * The enumeration values.
+    */
+   final List<String> facets = new ArrayList<String>();
+
+   TypeInfo(Kind kind, QName name, String identifier, String documentation)
+   {
+      this.kind = kind;
+      this.name = name;
+      this.identifier = identifier;
+      this.documentation = documentation;
+   }
+
+   /**
+    * @return all element properties, including those of the extended groups, in sequence order
+    */
+   List<PropertyInfo> getAllProperties()
+   {
+      List<PropertyInfo> result = new ArrayList<PropertyInfo>();
+      collect(result);
+      return result;
+   }
+
+   private void collect(List<PropertyInfo> result)
+   {
+      for(PropertyInfo property : properties)
+      {
+         if(property.group != null)
+            property.group.collect(result);
+         else
+            result.add(property);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return kind + " " + name;
+   }
+}
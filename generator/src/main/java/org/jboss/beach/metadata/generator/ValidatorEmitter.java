@@ -0,0 +1,364 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Emits the validator of a type, which checks the required elements, the minimum
+ * occurrences and the facets of the schema on the model, so the descriptor does not
+ * need to be validated against the schema as well.
+ *
+ * The patterns are translated from the XML schema dialect and compiled once.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class ValidatorEmitter
+{
+   private final String packageName;
+   private final boolean implementations;
+   private final List<TypeInfo> types = new ArrayList<TypeInfo>();
+   private final Set<TypeInfo> validated = new HashSet<TypeInfo>();
+
+   /**
+    * @param implementations whether the implementations are generated, so the lists can be peeked at
+    * @param types all types generated into the package, only those have a validator to descend into
+    */
+   ValidatorEmitter(String packageName, boolean implementations, List<TypeInfo> types)
+   {
+      this.packageName = packageName;
+      this.implementations = implementations;
+      for(TypeInfo type : types)
+      {
+         if(type.kind == TypeInfo.Kind.ELEMENTS || type.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+         {
+            this.types.add(type);
+            validated.add(type);
+         }
+      }
+   }
+
+   static String className(TypeInfo type)
+   {
+      return type.identifier + "Validator";
+   }
+
+   /**
+    * @return the types which get a validator
+    */
+   List<TypeInfo> getTypes()
+   {
+      return types;
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      String className = className(type);
+      CodeWriter out = CodeWriter.open();
+      CodeWriter body = CodeWriter.open();
+
+      List<String> fields = new ArrayList<String>();
+      if(type.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+      {
+         for(PropertyInfo attribute : type.properties)
+         {
+            if(attribute.minOccurs > 0)
+               body.println("      ValidationSupport.required(violations, path, \"@" + attribute.name + "\", value.get" + attribute.getIdentifier() + "());");
+         }
+      }
+      else
+      {
+         for(PropertyInfo property : type.getAllProperties())
+            emitProperty(body, fields, type, property);
+      }
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("import org.jboss.beach.metadata.runtime.ValidationSupport;");
+      out.println();
+      out.println("import java.util.ArrayList;");
+      out.println("import java.util.List;");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated validator of {@link " + type.identifier + "}.");
+      out.println(" */");
+      out.println("public final class " + className);
+      out.println("{");
+      for(String field : fields)
+         out.println(field);
+      if(!fields.isEmpty())
+         out.println();
+      out.println("   private " + className + "()");
+      out.println("   {");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * @return the violations, empty if the value is valid");
+      out.println("    */");
+      out.println("   public static List<String> validate(" + type.identifier + " value)");
+      out.println("   {");
+      out.println("      List<String> violations = new ArrayList<String>();");
+      out.println("      validate(value, \"\", violations);");
+      out.println("      return violations;");
+      out.println("   }");
+      out.println();
+      out.println("   /**");
+      out.println("    * @param path the path of the value, which prefixes the violations");
+      out.println("    */");
+      out.println("   public static void validate(" + type.identifier + " value, String path, List<String> violations)");
+      out.println("   {");
+      out.print(new String(body.finish()));
+      out.println("   }");
+      out.println("}");
+
+      return out.finish();
+   }
+
+   private void emitProperty(CodeWriter out, List<String> fields, TypeInfo type, PropertyInfo property)
+   {
+      String name = "\"" + property.name + "\"";
+      String getter = "value.get" + property.getIdentifier() + "()";
+      List<String> checks = checks(fields, property, property.getVariable(), name);
+      boolean descend = validated.contains(property.valueType);
+      if(property.collection)
+      {
+         if(property.minOccurs == 0 && checks.isEmpty() && !descend)
+            return;
+         String v = property.getVariable();
+         if(implementations)
+            getter = ImplementationEmitter.peek(type, property, "value");
+         out.println("      " + property.type + " " + v + " = " + getter + ";");
+         if(property.minOccurs > 0)
+            out.println("      ValidationSupport.minOccurs(violations, path, " + name + ", " + v + ", " + property.minOccurs + ");");
+         if(checks.isEmpty() && !descend)
+            return;
+         out.println("      for(int i = 0, n = " + v + ".size(); i < n; i++)");
+         out.println("      {");
+         checks = checks(fields, property, v + ".get(i)", name);
+         for(String check : checks)
+            out.println("         " + check);
+         if(descend)
+            emitDescend(out, property, v + ".get(i)", name, "i");
+         out.println("      }");
+      }
+      else
+      {
+         if(property.minOccurs > 0)
+            out.println("      ValidationSupport.required(violations, path, " + name + ", " + getter + ");");
+         if(checks.isEmpty() && !descend)
+            return;
+         String v = property.getVariable();
+         out.println("      " + property.type + " " + v + " = " + getter + ";");
+         out.println("      if(" + v + " != null)");
+         out.println("      {");
+         for(String check : checks)
+            out.println("         " + check);
+         if(descend)
+            emitDescend(out, property, v, name, "-1");
+         out.println("      }");
+      }
+   }
+
+   /**
+    * Validate the child relative to itself and only prefix its path to what it finds, so
+    * no path is built for a valid child.
+    */
+   private static void emitDescend(CodeWriter out, PropertyInfo property, String value, String name, String index)
+   {
+      out.println("         int start = violations.size();");
+      out.println("         " + className(property.valueType) + ".validate(" + value + ", \"\", violations);");
+      out.println("         ValidationSupport.prefix(violations, start, path, " + name + ", " + index + ");");
+   }
+
+   /**
+    * @param fields where to add the constants the checks need, which are only added once
+    * @return the statements which check the facets of a single value
+    */
+   private static List<String> checks(List<String> fields, PropertyInfo property, String value, String name)
+   {
+      List<String> checks = new ArrayList<String>();
+      String constant = property.name.toUpperCase().replace('-', '_');
+      if(property.itemType.equals("String"))
+      {
+         int patterns = 0;
+         List<String> values = new ArrayList<String>();
+         int minLength = 0;
+         int maxLength = Integer.MAX_VALUE;
+         for(FacetDefinition facet : property.facets)
+         {
+            String kind = facet.getKind();
+            if(facet.isPattern())
+            {
+               String regex = javaRegex(facet.getValue());
+               if(regex == null)
+               {
+                  System.out.println("Not checking pattern " + facet.getValue() + " of " + property.xsdType + ", it can't be translated");
+                  continue;
+               }
+               String field = constant + "_PATTERN" + (patterns > 0 ? String.valueOf(patterns) : "");
+               patterns++;
+               add(fields, "   private static final java.util.regex.Pattern " + field + " = java.util.regex.Pattern.compile(" + Generator.literal(regex) + ");");
+               checks.add("ValidationSupport.pattern(violations, path, " + name + ", " + value + ", " + field + ");");
+            }
+            else if(kind.equals("enumeration"))
+               values.add(Generator.literal(facet.getValue()));
+            else if(kind.equals("length"))
+            {
+               minLength = Math.max(minLength, Integer.parseInt(facet.getValue()));
+               maxLength = Math.min(maxLength, Integer.parseInt(facet.getValue()));
+            }
+            else if(kind.equals("minLength"))
+               minLength = Math.max(minLength, Integer.parseInt(facet.getValue()));
+            else if(kind.equals("maxLength"))
+               maxLength = Math.min(maxLength, Integer.parseInt(facet.getValue()));
+         }
+         if(!values.isEmpty())
+         {
+            String field = constant + "_VALUES";
+            add(fields, "   private static final java.util.Set<String> " + field + " = new java.util.HashSet<String>(java.util.Arrays.asList(" + join(values) + "));");
+            checks.add("ValidationSupport.enumeration(violations, path, " + name + ", " + value + ", " + field + ");");
+         }
+         if(minLength > 0 || maxLength < Integer.MAX_VALUE)
+            checks.add("ValidationSupport.length(violations, path, " + name + ", " + value + ", " + minLength + ", " + (maxLength == Integer.MAX_VALUE ? "Integer.MAX_VALUE" : String.valueOf(maxLength)) + ");");
+      }
+      else if(property.itemType.equals("Integer") || property.itemType.equals("Long"))
+      {
+         long min = Long.MIN_VALUE;
+         long max = Long.MAX_VALUE;
+         for(FacetDefinition facet : property.facets)
+         {
+            String kind = facet.getKind();
+            if(kind.equals("minInclusive"))
+               min = Math.max(min, Long.parseLong(facet.getValue()));
+            else if(kind.equals("minExclusive"))
+               min = Math.max(min, Long.parseLong(facet.getValue()) + 1);
+            else if(kind.equals("maxInclusive"))
+               max = Math.min(max, Long.parseLong(facet.getValue()));
+            else if(kind.equals("maxExclusive"))
+               max = Math.min(max, Long.parseLong(facet.getValue()) - 1);
+         }
+         if(min > Long.MIN_VALUE || max < Long.MAX_VALUE)
+            checks.add("ValidationSupport.range(violations, path, " + name + ", " + value + ", " + (min == Long.MIN_VALUE ? "Long.MIN_VALUE" : min + "L") + ", " + (max == Long.MAX_VALUE ? "Long.MAX_VALUE" : max + "L") + ");");
+      }
+      return checks;
+   }
+
+   private static void add(List<String> fields, String field)
+   {
+      if(!fields.contains(field))
+         fields.add(field);
+   }
+
+   private static String join(List<String> values)
+   {
+      StringBuilder sb = new StringBuilder();
+      for(String value : values)
+      {
+         if(sb.length() > 0)
+            sb.append(", ");
+         sb.append(value);
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Translate a pattern of XML schema into one of java.util.regex. A schema pattern is
+    * implicitly anchored, has no anchors, has the name character escapes and subtracts
+    * character classes. The name characters are approximated by their ASCII subset.
+    *
+    * @return the pattern or null if it can't be translated
+    */
+   static String javaRegex(String xsd)
+   {
+      StringBuilder sb = new StringBuilder(xsd.length() + 16);
+      // the depth of character classes
+      int depth = 0;
+      for(int i = 0; i < xsd.length(); i++)
+      {
+         char c = xsd.charAt(i);
+         if(c == '\\' && i + 1 < xsd.length())
+         {
+            char d = xsd.charAt(++i);
+            if(d == 'i')
+               sb.append(depth > 0 ? "_:A-Za-z" : "[_:A-Za-z]");
+            else if(d == 'c')
+               sb.append(depth > 0 ? "-._:A-Za-z0-9" : "[-._:A-Za-z0-9]");
+            else if(d == 'I' || d == 'C')
+            {
+               if(depth > 0)
+                  return null;
+               sb.append(d == 'I' ? "[^_:A-Za-z]" : "[^-._:A-Za-z0-9]");
+            }
+            else if(d == 'p' || d == 'P')
+            {
+               sb.append('\\').append(d);
+               // blocks are In in Java
+               if(xsd.startsWith("{Is", i + 1))
+               {
+                  sb.append("{In");
+                  i += 3;
+               }
+            }
+            else
+               sb.append('\\').append(d);
+         }
+         else if(c == '[')
+         {
+            sb.append(c);
+            depth++;
+         }
+         else if(c == ']')
+         {
+            sb.append(c);
+            depth--;
+         }
+         else if(c == '-' && depth > 0 && i + 1 < xsd.length() && xsd.charAt(i + 1) == '[')
+         {
+            // subtraction
+            sb.append("&&[^");
+            depth++;
+            i++;
+         }
+         else if((c == '$' || c == '^') && depth == 0)
+            sb.append('\\').append(c);
+         else if(c == '&' && depth > 0)
+            sb.append("\\&");
+         else
+            sb.append(c);
+      }
+      try
+      {
+         Pattern.compile(sb.toString());
+      }
+      catch(IllegalArgumentException e)
+      {
+         return null;
+      }
+      return sb.toString();
+   }
+}
@@ -0,0 +1,202 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Emits the visitor of a package, an adapter which visits everything and the
+ * traversal which walks a tree in sequence order.
+ *
+ * Only the types generated into the package are visited, values of types from
+ * other packages are not descended into.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class VisitorEmitter
+{
+   static final String VISITOR = "Visitor";
+   static final String ABSTRACT_VISITOR = "AbstractVisitor";
+   static final String TRAVERSAL = "Traversal";
+
+   private final String packageName;
+   private final boolean implementations;
+   private final List<TypeInfo> types = new ArrayList<TypeInfo>();
+   private final Set<TypeInfo> visitable = new HashSet<TypeInfo>();
+
+   /**
+    * @param implementations whether the implementations are generated, so the traversal can peek at their lists
+    */
+   VisitorEmitter(String packageName, boolean implementations, List<TypeInfo> types)
+   {
+      this.packageName = packageName;
+      this.implementations = implementations;
+      for(TypeInfo type : types)
+      {
+         if(type.kind == TypeInfo.Kind.ELEMENTS || type.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+         {
+            this.types.add(type);
+            visitable.add(type);
+         }
+      }
+   }
+
+   byte[] emitVisitor()
+   {
+      CodeWriter out = CodeWriter.open();
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated visitor of all types in this package, see {@link " + TRAVERSAL + "}.");
+      out.println(" */");
+      out.println("public interface " + VISITOR);
+      out.println("{");
+      boolean first = true;
+      for(TypeInfo type : types)
+      {
+         if(!first)
+            out.println();
+         first = false;
+         if(type.kind == TypeInfo.Kind.ELEMENTS)
+         {
+            out.println("   /**");
+            out.println("    * @return whether to visit the children");
+            out.println("    */");
+            out.println("   boolean visit(" + type.identifier + " value);");
+            out.println();
+            out.println("   /**");
+            out.println("    * Called after the children, if they were visited.");
+            out.println("    */");
+            out.println("   void endVisit(" + type.identifier + " value);");
+         }
+         else
+            out.println("   void visit(" + type.identifier + " value);");
+      }
+      out.println("}");
+
+      return out.finish();
+   }
+
+   byte[] emitAbstractVisitor()
+   {
+      CodeWriter out = CodeWriter.open();
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated visitor which visits everything and does nothing, to override selectively.");
+      out.println(" */");
+      out.println("public abstract class " + ABSTRACT_VISITOR + " implements " + VISITOR);
+      out.println("{");
+      boolean first = true;
+      for(TypeInfo type : types)
+      {
+         if(!first)
+            out.println();
+         first = false;
+         if(type.kind == TypeInfo.Kind.ELEMENTS)
+         {
+            out.println("   public boolean visit(" + type.identifier + " value)");
+            out.println("   {");
+            out.println("      return true;");
+            out.println("   }");
+            out.println();
+            out.println("   public void endVisit(" + type.identifier + " value)");
+            out.println("   {");
+            out.println("   }");
+         }
+         else
+         {
+            out.println("   public void visit(" + type.identifier + " value)");
+            out.println("   {");
+            out.println("   }");
+         }
+      }
+      out.println("}");
+
+      return out.finish();
+   }
+
+   /**
+    * Lists are walked by index, the generated implementations only hold random
+    * access lists, and read without copying the shared empty list, so a traversal
+    * does not allocate.
+    */
+   byte[] emitTraversal()
+   {
+      CodeWriter out = CodeWriter.open();
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated depth first traversal of metadata trees, which visits the elements in");
+      out.println(" * sequence order, including those of the extended groups.");
+      out.println(" */");
+      out.println("public final class " + TRAVERSAL);
+      out.println("{");
+      out.println("   private " + TRAVERSAL + "()");
+      out.println("   {");
+      out.println("   }");
+      for(TypeInfo type : types)
+      {
+         out.println();
+         out.println("   public static void traverse(" + type.identifier + " value, " + VISITOR + " visitor)");
+         out.println("   {");
+         if(type.kind == TypeInfo.Kind.SIMPLE_CONTENT)
+            out.println("      visitor.visit(value);");
+         else
+         {
+            out.println("      if(!visitor.visit(value))");
+            out.println("         return;");
+            for(PropertyInfo property : type.getAllProperties())
+            {
+               if(!visitable.contains(property.valueType))
+                  continue;
+               String getter = "value.get" + property.getIdentifier() + "()";
+               if(property.collection)
+               {
+                  String v = property.getVariable();
+                  if(implementations)
+                     getter = ImplementationEmitter.peek(type, property, "value");
+                  out.println("      " + property.type + " " + v + " = " + getter + ";");
+                  out.println("      for(int i = 0, n = " + v + ".size(); i < n; i++)");
+                  out.println("         traverse(" + v + ".get(i), visitor);");
+               }
+               else
+               {
+                  out.println("      if(" + getter + " != null)");
+                  out.println("         traverse(" + getter + ", visitor);");
+               }
+            }
+            out.println("      visitor.endVisit(value);");
+         }
+         out.println("   }");
+      }
+      out.println("}");
+
+      return out.finish();
+   }
+}
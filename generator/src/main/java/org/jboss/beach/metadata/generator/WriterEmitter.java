@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+
+/**
+ * Emits the StAX writer of a generated type or group.
+ *
+ * Elements are written in sequence order, unset values are left out.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+class WriterEmitter
+{
+   private final String packageName;
+   private final boolean implementations;
+
+   /**
+    * @param implementations whether the implementations are generated, so the lists can be peeked at
+    */
+   WriterEmitter(String packageName, boolean implementations)
+   {
+      this.packageName = packageName;
+      this.implementations = implementations;
+   }
+
+   static String className(TypeInfo type)
+   {
+      return type.identifier + "Writer";
+   }
+
+   byte[] emit(TypeInfo type)
+   {
+      CodeWriter out = CodeWriter.open();
+      String className = className(type);
+
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("import org.jboss.beach.metadata.runtime.ElementWriter;");
+      out.println("import org.jboss.beach.metadata.runtime.WriterSupport;");
+      out.println();
+      out.println("import javax.xml.stream.XMLStreamException;");
+      out.println("import javax.xml.stream.XMLStreamWriter;");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated writer of {@link " + type.identifier + "}.");
+      out.println(" */");
+      if(type.kind == TypeInfo.Kind.GROUP)
+         out.println("public final class " + className);
+      else
+         out.println("public final class " + className + " implements ElementWriter<" + type.identifier + ">");
+      out.println("{");
+      out.println("   public static final String NAMESPACE = \"" + type.name.getNamespaceURI() + "\";");
+      out.println();
+      if(type.kind != TypeInfo.Kind.GROUP)
+      {
+         out.println("   public static final " + className + " INSTANCE = new " + className + "();");
+         out.println();
+      }
+      out.println("   private " + className + "()");
+      out.println("   {");
+      out.println("   }");
+      out.println();
+      if(type.kind != TypeInfo.Kind.GROUP)
+      {
+         out.println("   public void write(XMLStreamWriter writer, " + type.identifier + " value) throws XMLStreamException");
+         out.println("   {");
+         out.println("      writeContent(writer, value);");
+         out.println("   }");
+         out.println();
+         out.println("   public static void writeElement(XMLStreamWriter writer, String localName, " + type.identifier + " value) throws XMLStreamException");
+         out.println("   {");
+         out.println("      WriterSupport.writeStartElement(writer, NAMESPACE, localName);");
+         out.println("      writeContent(writer, value);");
+         out.println("      writer.writeEndElement();");
+         out.println("   }");
+         out.println();
+      }
+      out.println("   public static void writeContent(XMLStreamWriter writer, " + type.identifier + " value) throws XMLStreamException");
+      out.println("   {");
+      switch(type.kind)
+      {
+         case GROUP:
+         case ELEMENTS:
+            emitElements(out, type);
+            break;
+         case SIMPLE_CONTENT:
+            emitSimpleContent(out, type);
+            break;
+         default:
+            throw new IllegalArgumentException("Can't write " + type);
+      }
+      out.println("   }");
+      out.println("}");
+
+      return out.finish();
+   }
+
+   private void emitElements(CodeWriter out, TypeInfo type)
+   {
+      // a group has no implementation of its own, so inline the groups to peek at their lists too
+      boolean peek = implementations && type.kind == TypeInfo.Kind.ELEMENTS;
+      for(PropertyInfo property : peek ? type.getAllProperties() : type.properties)
+      {
+         String getter = "value.get" + property.getIdentifier() + "()";
+         if(property.group != null)
+            out.println("      " + property.type + "Writer.writeContent(writer, value);");
+         else if(property.collection)
+         {
+            if(peek)
+               getter = "(" + ImplementationEmitter.peek(type, property, "value") + ")";
+            out.println("      for(" + property.itemType + " item : " + getter + ")");
+            out.println("         " + write(property, "item") + ";");
+         }
+         else
+         {
+            out.println("      if(" + getter + " != null)");
+            out.println("         " + write(property, getter) + ";");
+         }
+      }
+   }
+
+   private static void emitSimpleContent(CodeWriter out, TypeInfo type)
+   {
+      for(PropertyInfo attribute : type.properties)
+      {
+         String getter = "value.get" + attribute.getIdentifier() + "()";
+         out.println("      if(" + getter + " != null)");
+         if(attribute.attributeNamespace.length() > 0)
+            out.println("         writer.writeAttribute(\"" + attribute.attributeNamespace + "\", \"" + attribute.name + "\", " + getter + ");");
+         else
+            out.println("         writer.writeAttribute(\"" + attribute.name + "\", " + getter + ");");
+      }
+      out.println("      if(value.getValue() != null)");
+      out.println("         writer.writeCharacters(value.getValue());");
+   }
+
+   /**
+    * @return the statement which writes the value as element
+    */
+   private static String write(PropertyInfo property, String value)
+   {
+      TypeInfo valueType = property.valueType;
+      if(valueType != null)
+      {
+         switch(valueType.kind)
+         {
+            case ELEMENTS:
+            case SIMPLE_CONTENT:
+               return property.itemType + "Writer.writeElement(writer, \"" + property.name + "\", " + value + ")";
+            case ENUM:
+               return element(property, value + ".xmlValue()");
+         }
+      }
+      String type = property.itemType;
+      if(type.equals("String"))
+         return element(property, value);
+      if(type.equals("Boolean") || type.equals("Integer") || type.equals("Long") || type.equals("java.net.URI"))
+         return element(property, value + ".toString()");
+      if(type.equals("java.util.List<java.net.URI>"))
+         return element(property, "WriterSupport.toString(" + value + ")");
+      if(type.equals("javax.xml.namespace.QName"))
+         return element(property, value);
+      throw new IllegalStateException("Can't write " + property + " of type " + type);
+   }
+
+   private static String element(PropertyInfo property, String text)
+   {
+      return "WriterSupport.writeElement(writer, NAMESPACE, \"" + property.name + "\", " + text + ")";
+   }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The JAXBContext for the xsd model is expensive to create, so there is only one
+ * per class loader and it is created on first use. Unmarshallers are not thread
+ * safe, instead they are pooled.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class XsdContext
+{
+   private static final String XSD_PACKAGE = "org.jboss.beach.metadata.generator.xsd";
+
+   private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+   private static volatile JAXBContext context;
+
+   private static final Queue<Unmarshaller> pool = new ConcurrentLinkedQueue<Unmarshaller>();
+   private static final AtomicInteger pooled = new AtomicInteger();
+
+   private XsdContext()
+   {
+   }
+
+   public static JAXBContext getContext() throws JAXBException
+   {
+      JAXBContext result = context;
+      if(result == null)
+      {
+         synchronized(XsdContext.class)
+         {
+            result = context;
+            if(result == null)
+               context = result = JAXBContext.newInstance(XSD_PACKAGE);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Borrow an unmarshaller, which must be given back with {@link #release(Unmarshaller)}.
+    */
+   public static Unmarshaller borrow() throws JAXBException
+   {
+      Unmarshaller unmarshaller = pool.poll();
+      if(unmarshaller == null)
+         return getContext().createUnmarshaller();
+      pooled.decrementAndGet();
+      return unmarshaller;
+   }
+
+   public static void release(Unmarshaller unmarshaller)
+   {
+      // anything beyond the limit is left for the garbage collector
+      if(pooled.incrementAndGet() > MAX_POOLED)
+      {
+         pooled.decrementAndGet();
+         return;
+      }
+      pool.offer(unmarshaller);
+   }
+
+   public static Object unmarshal(File file) throws JAXBException
+   {
+      Unmarshaller unmarshaller = borrow();
+      try
+      {
+         return unmarshaller.unmarshal(file);
+      }
+      finally
+      {
+         release(unmarshaller);
+      }
+   }
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.model;
+
+import java.util.List;
+
+/**
+ * A complex type has either element content or simple content.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ComplexTypeDefinition extends Definition
+{
+   private final List<Particle> particles;
+   private final SimpleContentDefinition simpleContent;
+
+   public ComplexTypeDefinition(String name, String documentation, List<Particle> particles, SimpleContentDefinition simpleContent)
+   {
+      super(name, documentation);
+      this.particles = particles;
+      this.simpleContent = simpleContent;
+   }
+
+   /**
+    * The content model with nested sequences and choices flattened.
+    *
+    * @return the particles or null if the type has no element content
+    */
+   public List<Particle> getParticles()
+   {
+      return particles;
+   }
+
+   public SimpleContentDefinition getSimpleContent()
+   {
+      return simpleContent;
+   }
+}
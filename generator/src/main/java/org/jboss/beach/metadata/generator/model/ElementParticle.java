@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.model;
+
+import javax.xml.namespace.QName;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ElementParticle extends Particle
+{
+   public static final int UNBOUNDED = -1;
+
+   private final String name;
+   private final QName type;
+   private final int minOccurs;
+   private final int maxOccurs;
+   private final String documentation;
+
+   /**
+    * @param minOccurs the effective minOccurs, 0 if the element sits within a choice
+    * @param maxOccurs the maxOccurs or UNBOUNDED
+    */
+   public ElementParticle(String name, QName type, int minOccurs, int maxOccurs, String documentation)
+   {
+      this.name = name;
+      this.type = type;
+      this.minOccurs = minOccurs;
+      this.maxOccurs = maxOccurs;
+      this.documentation = documentation;
+   }
+
+   public String getDocumentation()
+   {
+      return documentation;
+   }
+
+   public int getMaxOccurs()
+   {
+      return maxOccurs;
+   }
+
+   public int getMinOccurs()
+   {
+      return minOccurs;
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public QName getType()
+   {
+      return type;
+   }
+
+   public boolean isUnbounded()
+   {
+      return maxOccurs == UNBOUNDED;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "Element " + name + " " + type + " [" + minOccurs + ", " + (isUnbounded() ? "unbounded" : String.valueOf(maxOccurs)) + "]";
+   }
+}
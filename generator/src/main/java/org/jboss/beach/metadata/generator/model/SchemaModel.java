@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of an XML schema the generator needs, without annotations
+ * or anything else that's only there for humans.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class SchemaModel
+{
+   private final String location;
+   private final String targetNamespace;
+   private final List<String> includes;
+   private final Map<String, String> imports;
+   private final List<Definition> definitions;
+   private final List<ElementParticle> elements;
+
+   public SchemaModel(String location, String targetNamespace, List<String> includes, Map<String, String> imports, List<Definition> definitions, List<ElementParticle> elements)
+   {
+      this.location = location;
+      this.targetNamespace = targetNamespace;
+      this.includes = includes;
+      this.imports = imports;
+      this.definitions = definitions;
+      this.elements = elements;
+   }
+
+   /**
+    * Named groups, complex types and simple types in document order.
+    */
+   public List<Definition> getDefinitions()
+   {
+      return definitions;
+   }
+
+   /**
+    * Top level elements in document order.
+    */
+   public List<ElementParticle> getElements()
+   {
+      return elements;
+   }
+
+   /**
+    * The schema locations of all includes.
+    */
+   public List<String> getIncludes()
+   {
+      return includes;
+   }
+
+   /**
+    * The imported namespaces in document order, mapped to their schema location or null if there is none.
+    */
+   public Map<String, String> getImports()
+   {
+      return imports;
+   }
+
+   public String getLocation()
+   {
+      return location;
+   }
+
+   public String getTargetNamespace()
+   {
+      return targetNamespace;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "Schema " + location;
+   }
+}
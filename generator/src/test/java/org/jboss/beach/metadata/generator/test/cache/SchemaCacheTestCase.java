@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.cache;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.generator.SchemaReader;
+import org.jboss.beach.metadata.generator.StaxSchemaReader;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class SchemaCacheTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.cache.javaee";
+
+   private static final AtomicInteger reads = new AtomicInteger();
+
+   public static class CountingSchemaReader implements SchemaReader
+   {
+      private final SchemaReader delegate = new StaxSchemaReader();
+
+      public SchemaModel read(File file) throws IOException
+      {
+         reads.incrementAndGet();
+         return delegate.read(file);
+      }
+   }
+
+   private static File generate(String destDirName, File cacheDir) throws Exception
+   {
+      File destDir = new File(destDirName);
+      destDir.mkdirs();
+      new File(destDir, ".generator-manifest").delete();
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setSchemaReader(new CountingSchemaReader());
+      generator.setSchemaCache(cacheDir);
+      generator.run("../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd");
+      return new File(destDir, PACKAGE.replace('.', File.separatorChar));
+   }
+
+   private static void delete(File dir)
+   {
+      File files[] = dir.listFiles();
+      if(files != null)
+      {
+         for(File file : files)
+            file.delete();
+      }
+   }
+
+   private static byte[] read(File file) throws IOException
+   {
+      byte content[] = new byte[(int) file.length()];
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         int off = 0;
+         int n;
+         while(off < content.length && (n = in.read(content, off, content.length - off)) != -1)
+            off += n;
+      }
+      finally
+      {
+         in.close();
+      }
+      return content;
+   }
+
+   @Test
+   public void testWarmRunReadsNothing() throws Exception
+   {
+      File cacheDir = new File("target/schema-cache");
+      delete(cacheDir);
+
+      reads.set(0);
+      File cold = generate("target/generated-sources/cache-cold", cacheDir);
+      assertEquals(2, reads.get());
+      assertTrue(cacheDir.list().length > 0);
+
+      reads.set(0);
+      File warm = generate("target/generated-sources/cache-warm", cacheDir);
+      assertEquals(0, reads.get());
+
+      String expected[] = cold.list();
+      String actual[] = warm.list();
+      Arrays.sort(expected);
+      Arrays.sort(actual);
+      assertTrue(expected.length > 0);
+      assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+      for(String name : expected)
+         assertArrayEquals(read(new File(cold, name)), read(new File(warm, name)));
+   }
+
+   @Test
+   public void testCorruptEntryIsAMiss() throws Exception
+   {
+      File cacheDir = new File("target/schema-cache-corrupt");
+      delete(cacheDir);
+      generate("target/generated-sources/cache-corrupt", cacheDir);
+      for(File file : cacheDir.listFiles())
+      {
+         OutputStream out = new FileOutputStream(file);
+         try
+         {
+            out.write(new byte[] { 1, 2, 3 });
+         }
+         finally
+         {
+            out.close();
+         }
+      }
+
+      reads.set(0);
+      generate("target/generated-sources/cache-corrupt", cacheDir);
+      assertEquals(2, reads.get());
+   }
+}
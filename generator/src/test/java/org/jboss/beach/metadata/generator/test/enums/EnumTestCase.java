@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.enums;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.runtime.ElementParser;
+import org.jboss.beach.metadata.runtime.ElementWriter;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.jboss.beach.metadata.runtime.WriterSupport;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class EnumTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.enums.version";
+   private static final String NAMESPACE = "http://www.jboss.org/xml/ns/jboss-beach-metadata/version";
+
+   private static ClassLoader generate(String name) throws Exception
+   {
+      File jar = new File("target/enums/" + name + ".jar");
+      jar.delete();
+      Generator generator = new Generator(PACKAGE, new File("target/generated-sources/enums-" + name));
+      generator.setGenerateParsers(true);
+      generator.setGenerateWriters(true);
+      generator.setCompileOutput(jar);
+      generator.run("src/test/resources/org/jboss/beach/metadata/generator/test/enums/version.xsd");
+      return new URLClassLoader(new URL[] { jar.toURI().toURL() }, EnumTestCase.class.getClassLoader());
+   }
+
+   @SuppressWarnings("unchecked")
+   private static Object parse(ClassLoader loader, String xml) throws Exception
+   {
+      ElementParser<Object> parser = (ElementParser<Object>) loader.loadClass(PACKAGE + ".SettingTypeParser").getField("INSTANCE").get(null);
+      return ParserSupport.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")), parser);
+   }
+
+   @Test
+   public void testLiterals() throws Exception
+   {
+      ClassLoader loader = generate("literals");
+      Class<?> level = loader.loadClass(PACKAGE + ".LevelType");
+      Method fromXml = level.getMethod("fromXml", String.class);
+      Method xmlValue = level.getMethod("xmlValue");
+      String literals[] = { "1.0", "class", "read-only", "read_only", "Aa", "BB" };
+      Object constants[] = level.getEnumConstants();
+      assertEquals(literals.length, constants.length);
+      for(int i = 0; i < literals.length; i++)
+      {
+         assertEquals(constants[i], fromXml.invoke(null, literals[i]));
+         assertEquals(literals[i], xmlValue.invoke(constants[i]));
+      }
+      assertEquals("_1_0", ((Enum<?>) constants[0]).name());
+      assertEquals("_class", ((Enum<?>) constants[1]).name());
+      assertEquals("read_only", ((Enum<?>) constants[2]).name());
+      assertEquals("read_only_", ((Enum<?>) constants[3]).name());
+      assertNull(fromXml.invoke(null, "unknown"));
+      assertNull(fromXml.invoke(null, (Object) null));
+   }
+
+   @Test
+   @SuppressWarnings("unchecked")
+   public void testReadWrite() throws Exception
+   {
+      ClassLoader loader = generate("readwrite");
+      Object setting = parse(loader, "<setting xmlns=\"" + NAMESPACE + "\"><level>read-only</level><level> 1.0 </level><level>BB</level></setting>");
+      List<?> levels = (List<?>) setting.getClass().getMethod("getLevel").invoke(setting);
+      assertEquals("[read_only, _1_0, BB]", levels.toString());
+
+      ElementWriter<Object> writer = (ElementWriter<Object>) loader.loadClass(PACKAGE + ".SettingTypeWriter").getField("INSTANCE").get(null);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      WriterSupport.write(out, NAMESPACE, "setting", writer, setting);
+      String xml = new String(out.toByteArray(), "UTF-8");
+      assertTrue(xml, xml.contains("<level>read-only</level><level>1.0</level><level>BB</level>"));
+
+      try
+      {
+         parse(loader, "<setting xmlns=\"" + NAMESPACE + "\"><level>read-write</level></setting>");
+         fail("read-write is not a level");
+      }
+      catch(XMLStreamException e)
+      {
+         assertTrue(e.getMessage(), e.getMessage().contains("read-write"));
+      }
+   }
+}
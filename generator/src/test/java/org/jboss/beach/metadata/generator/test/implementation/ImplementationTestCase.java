@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.implementation;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ImplementationTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.implementation.javaee";
+
+   private static ClassLoader generate() throws Exception
+   {
+      File output = new File("target/implementation");
+      Generator generator = new Generator(PACKAGE, new File("target/generated-sources/implementation"));
+      generator.setWriteSources(false);
+      generator.setGenerateImplementations(true);
+      generator.setCompileOutput(output);
+      generator.run("../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd");
+
+      return new URLClassLoader(new URL[] { output.toURI().toURL() });
+   }
+
+   @Test
+   public void testPrimitives() throws Exception
+   {
+      ClassLoader loader = generate();
+      Class<?> cls = loader.loadClass(PACKAGE + ".PortComponentRefTypeImpl");
+      assertEquals(long.class, cls.getDeclaredField("mtomThreshold").getType());
+      assertEquals(boolean.class, cls.getDeclaredField("enableMtom").getType());
+
+      Object ref = cls.newInstance();
+      Method getter = cls.getMethod("getMtomThreshold");
+      assertNull(getter.invoke(ref));
+      assertFalse((Boolean) cls.getMethod("isSetMtomThreshold").invoke(ref));
+
+      cls.getMethod("setMtomThreshold", long.class).invoke(ref, 0L);
+      assertEquals(0L, getter.invoke(ref));
+      assertTrue((Boolean) cls.getMethod("isSetMtomThreshold").invoke(ref));
+      // the other primitive shares the bitset
+      assertNull(cls.getMethod("getEnableMtom").invoke(ref));
+
+      cls.getMethod("setMtomThreshold", Long.class).invoke(ref, new Object[] { null });
+      assertNull(getter.invoke(ref));
+   }
+
+   @Test
+   public void testLazyCollection() throws Exception
+   {
+      ClassLoader loader = generate();
+      Class<?> serviceRef = loader.loadClass(PACKAGE + ".ServiceRefTypeImpl");
+      Object o = serviceRef.newInstance();
+      List<?> list = (List<?>) serviceRef.getMethod("getPortComponentRef").invoke(o);
+      assertTrue(list.isEmpty());
+      assertSame(list, serviceRef.getMethod("getPortComponentRef").invoke(o));
+   }
+}
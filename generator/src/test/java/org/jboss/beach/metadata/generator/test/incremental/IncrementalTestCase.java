@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.incremental;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class IncrementalTestCase
+{
+   private static final String DEST_DIR = "target/generated-sources/incremental";
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.incremental.javaee";
+   private static final String XSDS[] = {
+      "../javaee/src/main/resources/javaee_web_services_client_1_3.xsd",
+      "../javaee/src/main/resources/javaee_6.xsd"
+   };
+
+   @Test
+   public void testUnchangedOutputIsNotRewritten() throws Exception
+   {
+      Generator.generate(DEST_DIR, PACKAGE, XSDS);
+
+      File packageDir = new File(DEST_DIR, PACKAGE.replace('.', File.separatorChar));
+      File source = new File(packageDir, "DescriptionType.java");
+      assertTrue(source.isFile());
+      long past = System.currentTimeMillis() - 3600000;
+      source.setLastModified(past);
+      past = source.lastModified();
+
+      // nothing changed at all, the run is skipped
+      Generator.generate(DEST_DIR, PACKAGE, XSDS);
+      assertEquals(past, source.lastModified());
+
+      // forget about the previous run, content is the same so it's not written
+      File stale = new File(packageDir, "Stale.java");
+      stale.createNewFile();
+      assertTrue(new File(DEST_DIR, ".generator-manifest").delete());
+      Generator.generate(DEST_DIR, PACKAGE, XSDS);
+      assertEquals(past, source.lastModified());
+      // not known by the manifest, so left alone
+      assertTrue(stale.delete());
+   }
+
+   @Test
+   public void testStaleOutputIsDeleted() throws Exception
+   {
+      String destDir = DEST_DIR + "-stale";
+      Generator.generate(destDir, PACKAGE, XSDS);
+      File source = new File(destDir, PACKAGE.replace('.', File.separatorChar) + File.separator + "ServiceRefType.java");
+      assertTrue(source.isFile());
+
+      String otherPackage = PACKAGE + ".other";
+      Generator.generate(destDir, otherPackage, XSDS);
+      assertFalse(source.exists());
+      assertTrue(new File(destDir, otherPackage.replace('.', File.separatorChar) + File.separator + "ServiceRefType.java").isFile());
+   }
+}
@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.locator;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.generator.SchemaReader;
+import org.jboss.beach.metadata.generator.StaxSchemaReader;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class SchemaLocatorTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.locator.order";
+   private static final String JAVAEE_NS = "http://java.sun.com/xml/ns/javaee";
+   private static final String JAVAEE_PACKAGE = "org.jboss.beach.metadata.javaee.spec";
+   private static final String ORDER_XSD = "src/test/resources/org/jboss/beach/metadata/generator/test/locator/order.xsd";
+
+   private static class RecordingSchemaReader implements SchemaReader
+   {
+      final List<String> names = new ArrayList<String>();
+      private final SchemaReader delegate = new StaxSchemaReader();
+
+      public SchemaModel read(File file) throws IOException
+      {
+         names.add(file.getName());
+         return delegate.read(file);
+      }
+   }
+
+   private static String read(File file) throws IOException
+   {
+      byte content[] = new byte[(int) file.length()];
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         int off = 0;
+         int n;
+         while(off < content.length && (n = in.read(content, off, content.length - off)) != -1)
+            off += n;
+      }
+      finally
+      {
+         in.close();
+      }
+      return new String(content);
+   }
+
+   @Test
+   public void testImportFromCatalog() throws Exception
+   {
+      File destDir = new File("target/generated-sources/locator");
+      new File(destDir, ".generator-manifest").delete();
+      RecordingSchemaReader reader = new RecordingSchemaReader();
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setSchemaReader(reader);
+      generator.addCatalogEntry(JAVAEE_NS, new File("../javaee/src/main/resources/javaee_6.xsd"));
+      generator.setNamespacePackage(JAVAEE_NS, JAVAEE_PACKAGE);
+      generator.run(ORDER_XSD);
+
+      // neither the include of javaee_6.xsd nor its import of xml.xsd is needed
+      List<String> expected = new ArrayList<String>();
+      expected.add("order.xsd");
+      expected.add("javaee_6.xsd");
+      assertEquals(expected, reader.names);
+
+      String source = read(new File(destDir, PACKAGE.replace('.', File.separatorChar) + File.separator + "OrderType.java"));
+      assertTrue(source, source.contains(JAVAEE_PACKAGE + ".DescriptionType get"));
+   }
+
+   @Test
+   public void testIncludeOnDemand() throws Exception
+   {
+      File destDir = new File("target/generated-sources/locator-include");
+      new File(destDir, ".generator-manifest").delete();
+      RecordingSchemaReader reader = new RecordingSchemaReader();
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setSchemaReader(reader);
+      generator.setNamespacePackage(JAVAEE_NS, JAVAEE_PACKAGE);
+      generator.run("../javaee/src/main/resources/javaee_6.xsd");
+
+      assertEquals(2, reader.names.size());
+      assertEquals("javaee_web_services_client_1_3.xsd", reader.names.get(1));
+   }
+
+   @Test
+   public void testMissingCatalogEntry() throws Exception
+   {
+      Generator generator = new Generator(PACKAGE, new File("target/generated-sources/locator-missing"));
+      generator.setWriteSources(false);
+      generator.add(ORDER_XSD);
+      try
+      {
+         generator.generate();
+         fail("Expected the import of " + JAVAEE_NS + " to be unresolvable");
+      }
+      catch(RuntimeException e)
+      {
+         assertTrue(e.getMessage(), e.getMessage().contains("catalog"));
+      }
+   }
+}
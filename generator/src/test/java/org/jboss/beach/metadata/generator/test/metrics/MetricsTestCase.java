@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.metrics;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.generator.GeneratorMetrics;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class MetricsTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.metrics.javaee";
+
+   @Test
+   public void testRun() throws Exception
+   {
+      File destDir = new File("target/generated-sources/metrics");
+      destDir.mkdirs();
+      new File(destDir, ".generator-manifest").delete();
+      GeneratorMetrics metrics = new GeneratorMetrics();
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setMetrics(metrics);
+      generator.run("../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd");
+
+      assertEquals(2, metrics.getCount(GeneratorMetrics.Counter.SCHEMAS));
+      assertTrue(metrics.getSchemaNanos().containsKey("javaee_6.xsd"));
+      assertTrue(metrics.getNanos(GeneratorMetrics.Phase.READ) > 0);
+      assertTrue(metrics.getNanos(GeneratorMetrics.Phase.RESOLVE) > 0);
+      assertTrue(metrics.getNanos(GeneratorMetrics.Phase.EMIT) > 0);
+      assertEquals(0, metrics.getNanos(GeneratorMetrics.Phase.COMPILE));
+      assertTrue(metrics.getCount(GeneratorMetrics.Counter.TYPES) > 0);
+      assertTrue(metrics.getCount(GeneratorMetrics.Counter.PROPERTIES) > 0);
+      assertTrue(metrics.getCount(GeneratorMetrics.Counter.RESOLVER_HITS) > 0);
+      assertTrue(metrics.getCount(GeneratorMetrics.Counter.RESOLVER_MISSES) > 0);
+      long files = metrics.getCount(GeneratorMetrics.Counter.FILES_WRITTEN) + metrics.getCount(GeneratorMetrics.Counter.FILES_UNCHANGED);
+      assertTrue(files > 0);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      metrics.print(new PrintStream(out, true));
+      String summary = out.toString();
+      assertTrue(summary, summary.contains("phase.resolve.ms="));
+      assertTrue(summary, summary.contains("schema.javaee_6.xsd.ms="));
+      assertTrue(summary, summary.contains("bytes.written="));
+   }
+}
@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.parallel;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ParallelTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.parallel.javaee";
+
+   private static File generate(String destDirName, int parallelism) throws Exception
+   {
+      File destDir = new File(destDirName);
+      destDir.mkdirs();
+      // always a full run
+      new File(destDir, ".generator-manifest").delete();
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setParallelism(parallelism);
+      generator.run("../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd");
+      return new File(destDir, PACKAGE.replace('.', File.separatorChar));
+   }
+
+   private static byte[] read(File file) throws IOException
+   {
+      byte content[] = new byte[(int) file.length()];
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         int off = 0;
+         int n;
+         while(off < content.length && (n = in.read(content, off, content.length - off)) != -1)
+            off += n;
+      }
+      finally
+      {
+         in.close();
+      }
+      return content;
+   }
+
+   @Test
+   public void testSameAsSerial() throws Exception
+   {
+      File serial = generate("target/generated-sources/serial", 1);
+      File parallel = generate("target/generated-sources/parallel", 4);
+
+      String expected[] = serial.list();
+      String actual[] = parallel.list();
+      Arrays.sort(expected);
+      Arrays.sort(actual);
+      assertTrue(expected.length > 0);
+      assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+      for(String name : expected)
+         assertArrayEquals(read(new File(serial, name)), read(new File(parallel, name)));
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.parser;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.runtime.ElementParser;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ParserTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.parser.javaee";
+
+   private static Object get(Object obj, String name) throws Exception
+   {
+      Method method = obj.getClass().getMethod("get" + name);
+      return method.invoke(obj);
+   }
+
+   @Test
+   public void testServiceRef() throws Exception
+   {
+      File output = new File("target/parser");
+      Generator generator = new Generator(PACKAGE, new File("target/generated-sources/parser"));
+      generator.setWriteSources(false);
+      generator.setGenerateParsers(true);
+      generator.setCompileOutput(output);
+      generator.run("../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd");
+
+      ClassLoader loader = new URLClassLoader(new URL[] { output.toURI().toURL() });
+      ElementParser<?> parser = (ElementParser<?>) loader.loadClass(PACKAGE + ".ServiceRefTypeParser").getField("INSTANCE").get(null);
+      InputStream in = getClass().getResourceAsStream("service-ref.xml");
+      Object serviceRef;
+      try
+      {
+         serviceRef = ParserSupport.parse(in, parser);
+      }
+      finally
+      {
+         in.close();
+      }
+
+      assertEquals("service/Test", get(serviceRef, "ServiceRefName"));
+      assertEquals(new URI("META-INF/wsdl/test.wsdl"), get(serviceRef, "WsdlFile"));
+      assertEquals(new QName("urn:test", "TestService"), get(serviceRef, "ServiceQname"));
+      // from the groups
+      assertEquals("test", get(serviceRef, "MappedName"));
+      Object description = ((List<?>) get(serviceRef, "Description")).get(0);
+      assertEquals("A service", get(description, "Value"));
+      assertEquals("en", get(description, "Lang"));
+
+      List<?> refs = (List<?>) get(serviceRef, "PortComponentRef");
+      assertEquals(2, refs.size());
+      assertEquals(Boolean.TRUE, get(refs.get(0), "EnableMtom"));
+      assertEquals(4096L, get(refs.get(0), "MtomThreshold"));
+      assertEquals("org.jboss.test.Other", get(refs.get(1), "ServiceEndpointInterface"));
+      assertEquals(null, get(refs.get(1), "MtomThreshold"));
+
+      Object chain = ((List<?>) get(get(serviceRef, "HandlerChains"), "HandlerChain")).get(0);
+      assertEquals(Arrays.asList(new URI("http://schemas.xmlsoap.org/wsdl/soap/http"), new URI("http://www.w3.org/2003/05/soap/bindings/HTTP/")), get(chain, "ProtocolBindings"));
+      Object handler = ((List<?>) get(chain, "Handler")).get(0);
+      assertEquals("org.jboss.test.TestHandler", get(handler, "HandlerClass"));
+   }
+}
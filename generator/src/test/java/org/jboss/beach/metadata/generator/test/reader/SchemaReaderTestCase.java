@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.reader;
+
+import org.jboss.beach.metadata.generator.JaxbSchemaReader;
+import org.jboss.beach.metadata.generator.StaxSchemaReader;
+import org.jboss.beach.metadata.generator.model.AttributeDefinition;
+import org.jboss.beach.metadata.generator.model.ComplexTypeDefinition;
+import org.jboss.beach.metadata.generator.model.Definition;
+import org.jboss.beach.metadata.generator.model.ElementParticle;
+import org.jboss.beach.metadata.generator.model.FacetDefinition;
+import org.jboss.beach.metadata.generator.model.GroupDefinition;
+import org.jboss.beach.metadata.generator.model.Particle;
+import org.jboss.beach.metadata.generator.model.SchemaModel;
+import org.jboss.beach.metadata.generator.model.SimpleContentDefinition;
+import org.jboss.beach.metadata.generator.model.SimpleTypeDefinition;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class SchemaReaderTestCase
+{
+   private static final File DIR = new File("../javaee/src/main/resources");
+
+   private static String dump(SchemaModel schema)
+   {
+      StringBuilder sb = new StringBuilder();
+      sb.append(schema.getTargetNamespace()).append(' ').append(schema.getIncludes()).append(' ').append(schema.getImports()).append('\n');
+      for(Definition definition : schema.getDefinitions())
+      {
+         sb.append(definition).append('\n');
+         sb.append(definition.getDocumentation()).append('\n');
+         if(definition instanceof GroupDefinition)
+            dump(sb, ((GroupDefinition) definition).getParticles());
+         else if(definition instanceof ComplexTypeDefinition)
+         {
+            ComplexTypeDefinition type = (ComplexTypeDefinition) definition;
+            if(type.getParticles() != null)
+               dump(sb, type.getParticles());
+            SimpleContentDefinition content = type.getSimpleContent();
+            if(content != null)
+            {
+               sb.append(content.isExtension() ? " extension " : " restriction ").append(content.getBase()).append('\n');
+               for(AttributeDefinition a : content.getAttributes())
+                  sb.append(" @").append(a.getName()).append(' ').append(a.getRef()).append(' ').append(a.getType()).append('\n');
+               dumpFacets(sb, content.getFacets());
+            }
+         }
+         else
+         {
+            SimpleTypeDefinition type = (SimpleTypeDefinition) definition;
+            sb.append(" ").append(type.getRestrictionBase()).append(' ').append(type.getListItemType()).append('\n');
+            dumpFacets(sb, type.getFacets());
+         }
+      }
+      return sb.toString();
+   }
+
+   private static void dump(StringBuilder sb, List<Particle> particles)
+   {
+      for(Particle particle : particles)
+      {
+         sb.append(" ").append(particle).append('\n');
+         if(particle instanceof ElementParticle)
+            sb.append(" ").append(((ElementParticle) particle).getDocumentation()).append('\n');
+      }
+   }
+
+   private static void dumpFacets(StringBuilder sb, List<FacetDefinition> facets)
+   {
+      for(FacetDefinition facet : facets)
+         sb.append(" ").append(facet.getKind()).append('=').append(facet.getValue()).append('\n');
+   }
+
+   @Test
+   public void testStaxMatchesJaxb() throws Exception
+   {
+      for(String name : new String[] { "javaee_6.xsd", "javaee_web_services_client_1_3.xsd" })
+      {
+         File file = new File(DIR, name);
+         assertEquals(dump(new JaxbSchemaReader().read(file)), dump(new StaxSchemaReader().read(file)));
+      }
+   }
+
+   @Test
+   public void testChoice() throws Exception
+   {
+      SchemaModel schema = new StaxSchemaReader().read(new File(DIR, "javaee_web_services_client_1_3.xsd"));
+      for(Definition definition : schema.getDefinitions())
+      {
+         if(!definition.getName().equals("handler-chainType"))
+            continue;
+         List<Particle> particles = ((ComplexTypeDefinition) definition).getParticles();
+         assertEquals(4, particles.size());
+         // service-name-pattern is within a choice
+         assertEquals(0, ((ElementParticle) particles.get(0)).getMinOccurs());
+         ElementParticle handler = (ElementParticle) particles.get(3);
+         assertEquals("handler", handler.getName());
+         assertEquals(1, handler.getMinOccurs());
+         assertEquals(true, handler.isUnbounded());
+         return;
+      }
+      throw new AssertionError("handler-chainType not found");
+   }
+}
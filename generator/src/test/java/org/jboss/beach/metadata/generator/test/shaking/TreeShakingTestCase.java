@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.shaking;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.jar.JarFile;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class TreeShakingTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.shaking.javaee";
+
+   @Test
+   public void testOnlyReachable() throws Exception
+   {
+      File destDir = new File("target/generated-sources/shaking");
+      File jar = new File("target/shaking/javaee.jar");
+      jar.delete();
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setGenerateImplementations(true);
+      generator.setGenerateParsers(true);
+      generator.setCompileOutput(jar);
+      generator.addRoot("service-refType");
+      generator.run("../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd");
+
+      File packageDir = new File(destDir, PACKAGE.replace('.', File.separatorChar));
+      assertTrue(new File(packageDir, "ServiceRefType.java").isFile());
+      // through the handler chains
+      assertTrue(new File(packageDir, "HandlerChainType.java").isFile());
+      // through descriptionGroup
+      assertTrue(new File(packageDir, "IconType.java").isFile());
+      assertFalse(new File(packageDir, "EnvEntryType.java").exists());
+      assertFalse(new File(packageDir, "DataSourceType.java").exists());
+
+      // what is generated compiles on its own
+      JarFile jarFile = new JarFile(jar);
+      try
+      {
+         assertNotNull(jarFile.getEntry(PACKAGE.replace('.', '/') + "/ServiceRefTypeImpl.class"));
+         assertNull(jarFile.getEntry(PACKAGE.replace('.', '/') + "/EnvEntryTypeImpl.class"));
+      }
+      finally
+      {
+         jarFile.close();
+      }
+   }
+}
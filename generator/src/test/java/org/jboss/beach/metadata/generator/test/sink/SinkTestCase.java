@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.sink;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.generator.JarSink;
+import org.jboss.beach.metadata.generator.MemorySink;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class SinkTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.sink.javaee";
+   private static final String SCHEMAS[] = { "../javaee/src/main/resources/javaee_web_services_client_1_3.xsd", "../javaee/src/main/resources/javaee_6.xsd" };
+
+   private static Generator generator(File destDir)
+   {
+      Generator generator = new Generator(PACKAGE, destDir);
+      generator.setGenerateImplementations(true);
+      generator.setGenerateParsers(true);
+      generator.setGenerateVisitors(true);
+      return generator;
+   }
+
+   private static byte[] read(InputStream in) throws IOException
+   {
+      try
+      {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte buf[] = new byte[8192];
+         int n;
+         while((n = in.read(buf)) != -1)
+            out.write(buf, 0, n);
+         return out.toByteArray();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testSinksMatchDirectory() throws Exception
+   {
+      File destDir = new File("target/generated-sources/sink");
+      generator(destDir).run(SCHEMAS);
+
+      MemorySink memory = new MemorySink();
+      Generator generator = generator(new File("target/generated-sources/sink-memory"));
+      generator.setSink(memory);
+      generator.run(SCHEMAS);
+
+      File jar = new File("target/sink/javaee-sources.jar");
+      jar.delete();
+      generator = generator(new File("target/generated-sources/sink-jar"));
+      generator.setSink(new JarSink(jar));
+      generator.run(SCHEMAS);
+
+      Map<String, byte[]> sources = memory.getSources();
+      assertNotNull(sources.get(PACKAGE.replace('.', '/') + "/DescriptionGroup.java"));
+      assertFalse(new File("target/generated-sources/sink-memory/" + PACKAGE.replace('.', '/')).exists());
+      JarFile jarFile = new JarFile(jar);
+      try
+      {
+         int entries = 0;
+         for(Map.Entry<String, byte[]> entry : sources.entrySet())
+         {
+            File file = new File(destDir, entry.getKey());
+            assertTrue(entry.getKey(), Arrays.equals(read(new FileInputStream(file)), entry.getValue()));
+            ZipEntry zipEntry = jarFile.getEntry(entry.getKey());
+            assertNotNull(entry.getKey(), zipEntry);
+            assertTrue(entry.getKey(), Arrays.equals(read(jarFile.getInputStream(zipEntry)), entry.getValue()));
+            entries++;
+         }
+         assertEquals(new File(destDir, PACKAGE.replace('.', '/')).list().length, entries);
+
+         // whatever order the emitters finished in, the jar is written sorted by path
+         String previous = "";
+         for(Enumeration<JarEntry> e = jarFile.entries(); e.hasMoreElements(); )
+         {
+            String name = e.nextElement().getName();
+            assertTrue(previous + " before " + name, previous.compareTo(name) < 0);
+            previous = name;
+         }
+      }
+      finally
+      {
+         jarFile.close();
+      }
+   }
+}
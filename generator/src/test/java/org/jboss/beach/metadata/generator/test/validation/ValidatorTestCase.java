@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.generator.test.validation;
+
+import org.jboss.beach.metadata.generator.Generator;
+import org.jboss.beach.metadata.generator.MemorySink;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ValidatorTestCase
+{
+   private static final String PACKAGE = "org.jboss.beach.metadata.generator.test.validation.code";
+
+   @Test
+   public void testNarrowedLength() throws Exception
+   {
+      MemorySink sink = new MemorySink();
+      Generator generator = new Generator(PACKAGE, new File("target/generated-sources/validation"));
+      generator.setGenerateValidators(true);
+      generator.setSink(sink);
+      generator.run("src/test/resources/org/jboss/beach/metadata/generator/test/validation/code.xsd");
+
+      String source = new String(sink.getSources().get(PACKAGE.replace('.', '/') + "/ProductTypeValidator.java"));
+      assertTrue(source, source.contains("\"code\", code, 2, 5);"));
+   }
+}
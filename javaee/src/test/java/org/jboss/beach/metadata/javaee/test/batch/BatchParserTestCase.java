@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.batch;
+
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.runtime.BatchParser;
+import org.jboss.beach.metadata.runtime.ElementParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class BatchParserTestCase
+{
+   private ExecutorService executor;
+   private List<BatchParser.Source> sources = new ArrayList<BatchParser.Source>();
+
+   @Before
+   public void before()
+   {
+      executor = Executors.newFixedThreadPool(4);
+      URL url = getClass().getResource("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      for(int i = 0; i < 50; i++)
+      {
+         if(i == 7)
+            sources.add(BatchParser.source("broken", "<service-ref".getBytes()));
+         else
+            sources.add(BatchParser.source(url));
+      }
+   }
+
+   @After
+   public void after()
+   {
+      executor.shutdown();
+   }
+
+   @Test
+   public void testOrder() throws Exception
+   {
+      List<BatchParser.Result<ServiceRefType>> results = new BatchParser<ServiceRefType>(ServiceRefTypeParser.INSTANCE, executor, 8).parse(sources);
+      assertEquals(sources.size(), results.size());
+      for(int i = 0; i < results.size(); i++)
+      {
+         BatchParser.Result<ServiceRefType> result = results.get(i);
+         assertEquals(i, result.getIndex());
+         assertEquals(sources.get(i), result.getSource());
+         if(i == 7)
+         {
+            assertNull(result.getValue());
+            assertNotNull(result.getError());
+         }
+         else
+         {
+            assertTrue(result.getError() == null ? "" : result.getError().toString(), result.isSuccess());
+            assertEquals("service/Test", result.getValue().getServiceRefName());
+         }
+      }
+   }
+
+   @Test
+   public void testBackPressure() throws Exception
+   {
+      final AtomicInteger inFlight = new AtomicInteger();
+      final AtomicInteger max = new AtomicInteger();
+      Executor counting = new Executor()
+      {
+         public void execute(Runnable command)
+         {
+            int n = inFlight.incrementAndGet();
+            if(n > max.get())
+               max.set(n);
+            executor.execute(command);
+         }
+      };
+      final AtomicInteger next = new AtomicInteger();
+      new BatchParser<ServiceRefType>(ServiceRefTypeParser.INSTANCE, counting, 2).parse(sources, new BatchParser.Listener<ServiceRefType>()
+      {
+         public void parsed(BatchParser.Result<ServiceRefType> result)
+         {
+            assertEquals(next.getAndIncrement(), result.getIndex());
+            inFlight.decrementAndGet();
+         }
+      });
+      assertEquals(sources.size(), next.get());
+      assertTrue(max.get() <= 2);
+   }
+
+   @Test
+   public void testSlowListener() throws Exception
+   {
+      final CountDownLatch parsed = new CountDownLatch(8);
+      ElementParser<ServiceRefType> parser = new ElementParser<ServiceRefType>()
+      {
+         public ServiceRefType parse(XMLStreamReader reader) throws XMLStreamException
+         {
+            ServiceRefType value = ServiceRefTypeParser.INSTANCE.parse(reader);
+            parsed.countDown();
+            return value;
+         }
+      };
+      final AtomicBoolean overlapped = new AtomicBoolean();
+      new BatchParser<ServiceRefType>(parser, executor, 8).parse(sources.subList(8, 8 + 8), new BatchParser.Listener<ServiceRefType>()
+      {
+         public void parsed(BatchParser.Result<ServiceRefType> result)
+         {
+            // the other workers go on parsing while the first result is being delivered
+            if(result.getIndex() == 0)
+            {
+               try
+               {
+                  overlapped.set(parsed.await(10, TimeUnit.SECONDS));
+               }
+               catch(InterruptedException e)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         }
+      });
+      assertTrue(overlapped.get());
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.cache;
+
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeWriter;
+import org.jboss.beach.metadata.runtime.BinaryInput;
+import org.jboss.beach.metadata.runtime.BinaryOutput;
+import org.jboss.beach.metadata.runtime.MetadataCache;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.jboss.beach.metadata.runtime.WriterSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class MetadataCacheTestCase
+{
+   private File dir = new File("target/metadata-cache");
+   private byte[] content;
+
+   private static byte[] read(InputStream in) throws Exception
+   {
+      try
+      {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte buf[] = new byte[4096];
+         int n;
+         while((n = in.read(buf)) != -1)
+            out.write(buf, 0, n);
+         return out.toByteArray();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private static String toXml(ServiceRefType serviceRef) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      WriterSupport.write(out, "http://java.sun.com/xml/ns/javaee", "service-ref", ServiceRefTypeWriter.INSTANCE, serviceRef);
+      return new String(out.toByteArray(), "UTF-8");
+   }
+
+   @Before
+   public void before() throws Exception
+   {
+      File files[] = dir.listFiles();
+      if(files != null)
+      {
+         for(File file : files)
+            file.delete();
+      }
+      content = read(getClass().getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml"));
+   }
+
+   @Test
+   public void testHit() throws Exception
+   {
+      MetadataCache cache = new MetadataCache(dir, ServiceRefTypeCodec.VERSION);
+      ServiceRefType parsed = cache.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE);
+      assertEquals(1, dir.listFiles().length);
+      ServiceRefType cached = cache.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE);
+      assertNotSame(parsed, cached);
+      assertEquals(toXml(parsed), toXml(cached));
+      assertEquals(Long.valueOf(4096), cached.getPortComponentRef().get(0).getMtomThreshold());
+      assertEquals(null, cached.getPortComponentRef().get(1).getMtomThreshold());
+   }
+
+   @Test
+   public void testSchemaVersion() throws Exception
+   {
+      new MetadataCache(dir, ServiceRefTypeCodec.VERSION).load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE);
+      new MetadataCache(dir, "other").load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE);
+      assertEquals(2, dir.listFiles().length);
+   }
+
+   @Test
+   public void testCorrupt() throws Exception
+   {
+      MetadataCache cache = new MetadataCache(dir, ServiceRefTypeCodec.VERSION);
+      String xml = toXml(cache.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE));
+      File file = dir.listFiles()[0];
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try
+      {
+         raf.setLength(file.length() / 2);
+      }
+      finally
+      {
+         raf.close();
+      }
+      assertEquals(xml, toXml(cache.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE)));
+      // and stored again
+      assertEquals(xml, toXml(ServiceRefTypeCodec.read(new BinaryInput(read(new FileInputStream(file))))));
+   }
+
+   @Test
+   public void testHugeSize() throws Exception
+   {
+      MetadataCache cache = new MetadataCache(dir, ServiceRefTypeCodec.VERSION);
+      String xml = toXml(cache.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE));
+      File file = dir.listFiles()[0];
+      // no presence bits, followed by a list count of Integer.MAX_VALUE
+      byte damaged[] = { 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(damaged);
+      }
+      finally
+      {
+         out.close();
+      }
+      assertEquals(xml, toXml(cache.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE)));
+      // the damaged entry is gone, a fresh one took its place
+      assertFalse(Arrays.equals(damaged, read(new FileInputStream(file))));
+      assertEquals(xml, toXml(ServiceRefTypeCodec.read(new BinaryInput(read(new FileInputStream(file))))));
+   }
+
+   @Test
+   public void testCompact() throws Exception
+   {
+      ServiceRefType serviceRef = ParserSupport.parse(new ByteArrayInputStream(content), ServiceRefTypeParser.INSTANCE);
+      BinaryOutput out = new BinaryOutput();
+      ServiceRefTypeCodec.write(out, serviceRef);
+      byte[] encoded = out.toByteArray();
+      assertTrue(encoded.length < toXml(serviceRef).length() / 2);
+      BinaryInput in = new BinaryInput(encoded);
+      assertEquals(toXml(serviceRef), toXml(ServiceRefTypeCodec.read(in)));
+      assertFalse(in.hasRemaining());
+   }
+}
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.immutable;
+
+import org.jboss.beach.metadata.javaee.ImmutableServiceRefType;
+import org.jboss.beach.metadata.javaee.ImmutablePortComponentRefType;
+import org.jboss.beach.metadata.javaee.PortComponentRefType;
+import org.jboss.beach.metadata.javaee.PortComponentRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.runtime.FrozenList;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ImmutableTestCase
+{
+   private ServiceRefTypeImpl parse() throws Exception
+   {
+      InputStream in = getClass().getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      try
+      {
+         return ParserSupport.parse(in, ServiceRefTypeParser.INSTANCE);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testFreeze() throws Exception
+   {
+      ServiceRefTypeImpl builder = parse();
+      ImmutableServiceRefType serviceRef = builder.freeze();
+      assertEquals("service/Test", serviceRef.getServiceRefName());
+      assertEquals(Long.valueOf(4096), serviceRef.getPortComponentRef().get(0).getMtomThreshold());
+
+      // changing the builder afterwards does not show through
+      builder.setServiceRefName("service/Other");
+      builder.getPortComponentRef().clear();
+      assertEquals("service/Test", serviceRef.getServiceRefName());
+      assertEquals(2, serviceRef.getPortComponentRef().size());
+
+      try
+      {
+         serviceRef.setServiceRefName("service/Other");
+         fail("Expected UnsupportedOperationException");
+      }
+      catch(UnsupportedOperationException e)
+      {
+         // good
+      }
+      try
+      {
+         serviceRef.getPortComponentRef().get(0).setMtomThreshold(1L);
+         fail("Expected UnsupportedOperationException");
+      }
+      catch(UnsupportedOperationException e)
+      {
+         // good
+      }
+      try
+      {
+         serviceRef.getPortComponentRef().clear();
+         fail("Expected UnsupportedOperationException");
+      }
+      catch(UnsupportedOperationException e)
+      {
+         // good
+      }
+   }
+
+   @Test
+   public void testSharing() throws Exception
+   {
+      ImmutableServiceRefType original = parse().freeze();
+      ServiceRefTypeImpl builder = original.toBuilder();
+      builder.setServiceRefName("service/Other");
+      ImmutableServiceRefType derived = builder.freeze();
+
+      assertEquals("service/Other", derived.getServiceRefName());
+      assertEquals("service/Test", original.getServiceRefName());
+      assertSame(original.getHandlerChains(), derived.getHandlerChains());
+      assertSame(original.getPortComponentRef(), derived.getPortComponentRef());
+      assertSame(original.getDescription(), derived.getDescription());
+      assertSame(derived, ImmutableServiceRefType.freeze(derived));
+
+      // touching a list copies it, but its frozen items are still shared
+      builder = derived.toBuilder();
+      PortComponentRefTypeImpl ref = new PortComponentRefTypeImpl();
+      ref.setServiceEndpointInterface("org.jboss.test.Third");
+      builder.getPortComponentRef().add(ref);
+      ImmutableServiceRefType third = builder.freeze();
+      assertEquals(3, third.getPortComponentRef().size());
+      assertEquals(2, derived.getPortComponentRef().size());
+      assertNotSame(derived.getPortComponentRef(), third.getPortComponentRef());
+      assertSame(derived.getPortComponentRef().get(0), third.getPortComponentRef().get(0));
+   }
+
+   @Test
+   public void testFreezeFrozenListOfBuilders() throws Exception
+   {
+      PortComponentRefTypeImpl ref = new PortComponentRefTypeImpl();
+      ref.setServiceEndpointInterface("org.jboss.test.Endpoint");
+      ServiceRefTypeImpl builder = parse();
+      builder.setPortComponentRef(FrozenList.copyOf(Collections.<PortComponentRefType>singletonList(ref)));
+      ImmutableServiceRefType serviceRef = builder.freeze();
+
+      // a FrozenList holding a builder must not slip through unfrozen
+      assertTrue(serviceRef.getPortComponentRef().get(0) instanceof ImmutablePortComponentRefType);
+      ref.setServiceEndpointInterface("org.jboss.test.Other");
+      assertEquals("org.jboss.test.Endpoint", serviceRef.getPortComponentRef().get(0).getServiceEndpointInterface());
+   }
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.lazy;
+
+import org.jboss.beach.metadata.javaee.PortComponentRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeWriter;
+import org.jboss.beach.metadata.runtime.BinaryInput;
+import org.jboss.beach.metadata.runtime.BinaryOutput;
+import org.jboss.beach.metadata.runtime.Lists;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.jboss.beach.metadata.runtime.WriterSupport;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class LazyCollectionTestCase
+{
+   private static ServiceRefTypeImpl parse() throws Exception
+   {
+      InputStream in = LazyCollectionTestCase.class.getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      try
+      {
+         return ParserSupport.parse(in, ServiceRefTypeParser.INSTANCE);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   /**
+    * Peek at the field, the getter would make it modifiable.
+    */
+   private static List<?> field(Object obj, String name) throws Exception
+   {
+      Field field = obj.getClass().getDeclaredField(name);
+      field.setAccessible(true);
+      return (List<?>) field.get(obj);
+   }
+
+   @Test
+   public void testUnusedIsShared() throws Exception
+   {
+      ServiceRefTypeImpl serviceRef = parse();
+      assertSame(Collections.emptyList(), field(serviceRef, "icon"));
+      assertSame(Collections.emptyList(), field(serviceRef, "handler"));
+      assertEquals(2, field(serviceRef, "portComponentRef").size());
+
+      BinaryOutput out = new BinaryOutput();
+      ServiceRefTypeCodec.write(out, serviceRef);
+      WriterSupport.write(new ByteArrayOutputStream(), "http://java.sun.com/xml/ns/javaee", "service-ref", ServiceRefTypeWriter.INSTANCE, serviceRef);
+      // reading must not copy the shared lists of the original
+      assertTrue(Lists.isShared(field(serviceRef, "icon")));
+      assertTrue(Lists.isShared(field(serviceRef, "handler")));
+      ServiceRefTypeImpl decoded = ServiceRefTypeCodec.read(new BinaryInput(ByteBuffer.wrap(out.toByteArray())));
+      assertSame(Collections.emptyList(), field(decoded, "icon"));
+      assertEquals(2, decoded.getPortComponentRef().size());
+   }
+
+   @Test
+   public void testFirstUse() throws Exception
+   {
+      ServiceRefTypeImpl a = new ServiceRefTypeImpl();
+      ServiceRefTypeImpl b = new ServiceRefTypeImpl();
+      assertSame(field(a, "portComponentRef"), field(b, "portComponentRef"));
+      a.getPortComponentRef().add(new PortComponentRefTypeImpl());
+      assertEquals(1, a.getPortComponentRef().size());
+      assertTrue(b.getPortComponentRef().isEmpty());
+      assertNotSame(a.getPortComponentRef(), b.getPortComponentRef());
+
+      a.setPortComponentRef(null);
+      assertTrue(a.getPortComponentRef().isEmpty());
+   }
+
+   @Test
+   public void testTrimToSize() throws Exception
+   {
+      ServiceRefTypeImpl serviceRef = parse();
+      serviceRef.getIcon();
+      serviceRef.trimToSize();
+      assertSame(Collections.emptyList(), field(serviceRef, "icon"));
+      assertEquals(2, serviceRef.getPortComponentRef().size());
+      assertEquals("org.jboss.test.Endpoint", serviceRef.getPortComponentRef().get(0).getServiceEndpointInterface());
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.merge;
+
+import org.jboss.beach.metadata.javaee.HandlerTypeImpl;
+import org.jboss.beach.metadata.javaee.PortComponentRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeMerger;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.runtime.Lists;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class MergeTestCase
+{
+   private static ServiceRefTypeImpl parse() throws Exception
+   {
+      InputStream in = MergeTestCase.class.getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      try
+      {
+         return ParserSupport.parse(in, ServiceRefTypeParser.INSTANCE);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private static List<?> field(Object obj, String name) throws Exception
+   {
+      Field field = obj.getClass().getDeclaredField(name);
+      field.setAccessible(true);
+      return (List<?>) field.get(obj);
+   }
+
+   private static HandlerTypeImpl handler(String name, String className)
+   {
+      HandlerTypeImpl handler = new HandlerTypeImpl();
+      handler.setHandlerName(name);
+      handler.setHandlerClass(className);
+      return handler;
+   }
+
+   @Test
+   public void testScalars() throws Exception
+   {
+      ServiceRefTypeImpl base = parse();
+      ServiceRefTypeImpl override = new ServiceRefTypeImpl();
+      override.setMappedName("vendor");
+
+      ServiceRefType result = ServiceRefTypeMerger.merge(base, override);
+      // reading the inputs does not copy their shared lists
+      assertTrue(Lists.isShared(field(base, "icon")));
+      assertTrue(Lists.isShared(field(override, "portComponentRef")));
+      assertEquals("vendor", result.getMappedName());
+      assertEquals("service/Test", result.getServiceRefName());
+      assertEquals("test", base.getMappedName());
+      // nothing to overlay, so the children are shared with the base, but not the lists
+      assertNotSame(base.getPortComponentRef(), result.getPortComponentRef());
+      assertSame(base.getPortComponentRef().get(0), result.getPortComponentRef().get(0));
+      result.getPortComponentRef().clear();
+      assertEquals(2, base.getPortComponentRef().size());
+      assertSame(base.getHandlerChains(), result.getHandlerChains());
+   }
+
+   @Test
+   public void testKeyed() throws Exception
+   {
+      ServiceRefTypeImpl base = parse();
+      base.getHandler().add(handler("First", "org.jboss.test.First"));
+      base.getHandler().add(handler("Second", "org.jboss.test.Second"));
+      ServiceRefTypeImpl override = new ServiceRefTypeImpl();
+      override.getHandler().add(handler("Third", "org.jboss.test.Third"));
+      override.getHandler().add(handler("Second", "org.jboss.test.Vendor"));
+
+      ServiceRefType result = ServiceRefTypeMerger.merge(base, override);
+      assertEquals(3, result.getHandler().size());
+      assertSame(base.getHandler().get(0), result.getHandler().get(0));
+      assertEquals("Second", result.getHandler().get(1).getHandlerName());
+      assertEquals("org.jboss.test.Vendor", result.getHandler().get(1).getHandlerClass());
+      assertEquals("Third", result.getHandler().get(2).getHandlerName());
+      assertEquals("org.jboss.test.Second", base.getHandler().get(1).getHandlerClass());
+   }
+
+   @Test
+   public void testUnkeyedIsReplaced() throws Exception
+   {
+      ServiceRefTypeImpl base = parse();
+      ServiceRefTypeImpl override = new ServiceRefTypeImpl();
+      PortComponentRefTypeImpl ref = new PortComponentRefTypeImpl();
+      ref.setServiceEndpointInterface("org.jboss.test.Vendor");
+      override.getPortComponentRef().add(ref);
+
+      ServiceRefType result = ServiceRefTypeMerger.merge(base, override);
+      assertEquals(1, result.getPortComponentRef().size());
+      assertEquals("org.jboss.test.Vendor", result.getPortComponentRef().get(0).getServiceEndpointInterface());
+      assertSame(base, ServiceRefTypeMerger.merge(base, null));
+   }
+}
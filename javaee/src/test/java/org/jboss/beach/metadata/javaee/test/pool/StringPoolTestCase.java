@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.pool;
+
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.runtime.BinaryInput;
+import org.jboss.beach.metadata.runtime.BinaryOutput;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.jboss.beach.metadata.runtime.StringPool;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class StringPoolTestCase
+{
+   private ServiceRefType parse(StringPool pool) throws Exception
+   {
+      InputStream in = getClass().getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      try
+      {
+         return ParserSupport.parse(in, ServiceRefTypeParser.INSTANCE, pool);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testParse() throws Exception
+   {
+      StringPool pool = new StringPool();
+      ServiceRefType first = parse(pool);
+      assertEquals(0, pool.getHits());
+      ServiceRefType second = parse(pool);
+      assertSame(first.getServiceRefName(), second.getServiceRefName());
+      assertSame(first.getDescription().get(0).getLang(), second.getDescription().get(0).getLang());
+      assertSame(first.getPortComponentRef().get(0).getServiceEndpointInterface(), second.getPortComponentRef().get(0).getServiceEndpointInterface());
+      assertTrue(pool.getHits() > 0);
+      assertTrue(pool.getBytesSaved() > 0);
+   }
+
+   @Test
+   public void testDecode() throws Exception
+   {
+      StringPool pool = new StringPool();
+      ServiceRefType parsed = parse(pool);
+      BinaryOutput out = new BinaryOutput();
+      ServiceRefTypeCodec.write(out, parsed);
+      ServiceRefType decoded = ServiceRefTypeCodec.read(new BinaryInput(ByteBuffer.wrap(out.toByteArray()), pool));
+      assertSame(parsed.getServiceRefName(), decoded.getServiceRefName());
+      assertSame(parsed.getHandlerChains().getHandlerChain().get(0).getHandler().get(0).getHandlerClass(), decoded.getHandlerChains().getHandlerChain().get(0).getHandler().get(0).getHandlerClass());
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.roundtrip;
+
+import org.jboss.beach.metadata.javaee.ResAuthType;
+import org.jboss.beach.metadata.javaee.ResourceRefType;
+import org.jboss.beach.metadata.javaee.ResourceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ResourceRefTypeWriter;
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeWriter;
+import org.jboss.beach.metadata.runtime.ElementParser;
+import org.jboss.beach.metadata.runtime.ElementWriter;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.jboss.beach.metadata.runtime.WriterSupport;
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class RoundTripTestCase
+{
+   private static final String NAMESPACE = "http://java.sun.com/xml/ns/javaee";
+
+   private <T> T parse(String resource, ElementParser<T> parser) throws Exception
+   {
+      InputStream in = getClass().getResourceAsStream(resource);
+      try
+      {
+         return ParserSupport.parse(in, parser);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private static <T> byte[] write(String localName, ElementWriter<T> writer, T value) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      WriterSupport.write(out, NAMESPACE, localName, writer, value);
+      return out.toByteArray();
+   }
+
+   /**
+    * Write, read back and write again, which must give the same document.
+    */
+   private static <T> T roundTrip(String localName, ElementParser<? extends T> parser, ElementWriter<T> writer, T value) throws Exception
+   {
+      byte[] written = write(localName, writer, value);
+      T result = ParserSupport.parse(new ByteArrayInputStream(written), parser);
+      assertEquals(new String(written, "UTF-8"), new String(write(localName, writer, result), "UTF-8"));
+      return result;
+   }
+
+   @Test
+   public void testServiceRef() throws Exception
+   {
+      ServiceRefType serviceRef = roundTrip("service-ref", ServiceRefTypeParser.INSTANCE, ServiceRefTypeWriter.INSTANCE, parse("service-ref.xml", ServiceRefTypeParser.INSTANCE));
+
+      assertEquals("service/Test", serviceRef.getServiceRefName());
+      assertEquals(new QName("urn:test", "TestService"), serviceRef.getServiceQname());
+      assertEquals("en", serviceRef.getDescription().get(0).getLang());
+      assertEquals(2, serviceRef.getPortComponentRef().size());
+      assertEquals(Long.valueOf(4096), serviceRef.getPortComponentRef().get(0).getMtomThreshold());
+      assertEquals(null, serviceRef.getPortComponentRef().get(1).getEnableMtom());
+      assertEquals("org.jboss.test.TestHandler", serviceRef.getHandlerChains().getHandlerChain().get(0).getHandler().get(0).getHandlerClass());
+      assertEquals("service", serviceRef.getInjectionTarget().get(0).getInjectionTargetName());
+   }
+
+   @Test
+   public void testResourceRef() throws Exception
+   {
+      ResourceRefType resourceRef = roundTrip("resource-ref", ResourceRefTypeParser.INSTANCE, ResourceRefTypeWriter.INSTANCE, parse("resource-ref.xml", ResourceRefTypeParser.INSTANCE));
+
+      assertEquals("jdbc/Default", resourceRef.getResRefName());
+      assertEquals(ResAuthType.Container, resourceRef.getResAuth());
+      assertEquals("java:/DefaultDS", resourceRef.getLookupName());
+   }
+}
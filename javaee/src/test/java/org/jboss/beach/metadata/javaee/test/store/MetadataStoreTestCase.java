@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.store;
+
+import org.jboss.beach.metadata.javaee.PortComponentRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeCodec;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeWriter;
+import org.jboss.beach.metadata.runtime.BinaryInput;
+import org.jboss.beach.metadata.runtime.MetadataStore;
+import org.jboss.beach.metadata.runtime.WriterSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class MetadataStoreTestCase
+{
+   private File file = new File("target/metadata-store/metadata.bin");
+   private byte[] content;
+
+   private static byte[] read(InputStream in) throws Exception
+   {
+      try
+      {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte buf[] = new byte[4096];
+         int n;
+         while((n = in.read(buf)) != -1)
+            out.write(buf, 0, n);
+         return out.toByteArray();
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private static String toXml(ServiceRefType serviceRef) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      WriterSupport.write(out, "http://java.sun.com/xml/ns/javaee", "service-ref", ServiceRefTypeWriter.INSTANCE, serviceRef);
+      return new String(out.toByteArray(), "UTF-8");
+   }
+
+   private ServiceRefType load(MetadataStore store) throws Exception
+   {
+      return store.load(content, ServiceRefTypeParser.INSTANCE, ServiceRefTypeCodec.INSTANCE);
+   }
+
+   @Before
+   public void before() throws Exception
+   {
+      file.delete();
+      content = read(getClass().getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml"));
+   }
+
+   @Test
+   public void testHit() throws Exception
+   {
+      MetadataStore store = new MetadataStore(file, ServiceRefTypeCodec.VERSION);
+      try
+      {
+         assertNull(store.view(content, ServiceRefTypeCodec.INSTANCE));
+         ServiceRefType parsed = load(store);
+         ServiceRefType stored = load(store);
+         assertNotSame(parsed, stored);
+         assertEquals(toXml(parsed), toXml(stored));
+         assertEquals(1, store.size());
+         ByteBuffer view = store.view(content, ServiceRefTypeCodec.INSTANCE);
+         assertTrue(view.isReadOnly());
+         // the same bytes stored through another codec are another entry
+         assertNull(store.view(content, PortComponentRefTypeCodec.INSTANCE));
+         assertEquals(toXml(parsed), toXml(ServiceRefTypeCodec.INSTANCE.decode(new BinaryInput(view))));
+      }
+      finally
+      {
+         store.close();
+      }
+   }
+
+   @Test
+   public void testShared() throws Exception
+   {
+      MetadataStore first = new MetadataStore(file, ServiceRefTypeCodec.VERSION);
+      MetadataStore second = new MetadataStore(file, ServiceRefTypeCodec.VERSION);
+      try
+      {
+         ServiceRefType parsed = load(first);
+         long length = file.length();
+         // the second store picks up the entry instead of appending its own
+         assertEquals(toXml(parsed), toXml(load(second)));
+         assertEquals(length, file.length());
+         assertEquals(1, second.size());
+      }
+      finally
+      {
+         first.close();
+         second.close();
+      }
+   }
+
+   @Test
+   public void testGrow() throws Exception
+   {
+      MetadataStore store = new MetadataStore(file, ServiceRefTypeCodec.VERSION);
+      try
+      {
+         String xml = toXml(load(store));
+         byte[] original = content;
+         // outgrow the first mapping a few times over
+         for(int i = 0; i < 1000; i++)
+         {
+            content = (new String(original, "UTF-8") + "<!-- " + i + " -->").getBytes("UTF-8");
+            load(store);
+         }
+         assertEquals(1001, store.size());
+         content = original;
+         assertEquals(xml, toXml(load(store)));
+         content = (new String(original, "UTF-8") + "<!-- 0 -->").getBytes("UTF-8");
+         assertEquals(xml, toXml(load(store)));
+      }
+      finally
+      {
+         store.close();
+      }
+   }
+
+   @Test
+   public void testReopen() throws Exception
+   {
+      MetadataStore store = new MetadataStore(file, ServiceRefTypeCodec.VERSION);
+      String xml = toXml(load(store));
+      store.close();
+      store = new MetadataStore(file, ServiceRefTypeCodec.VERSION);
+      try
+      {
+         assertEquals(1, store.size());
+         assertEquals(xml, toXml(load(store)));
+      }
+      finally
+      {
+         store.close();
+      }
+      store = new MetadataStore(file, "other");
+      try
+      {
+         assertNull(store.view(content, ServiceRefTypeCodec.INSTANCE));
+      }
+      finally
+      {
+         store.close();
+      }
+   }
+}
@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.validation;
+
+import org.jboss.beach.metadata.javaee.DataSourceTypeImpl;
+import org.jboss.beach.metadata.javaee.DataSourceTypeValidator;
+import org.jboss.beach.metadata.javaee.HandlerChainTypeImpl;
+import org.jboss.beach.metadata.javaee.InjectionTargetTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeValidator;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class ValidationTestCase
+{
+   private static ServiceRefTypeImpl parse() throws Exception
+   {
+      InputStream in = ValidationTestCase.class.getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      try
+      {
+         return ParserSupport.parse(in, ServiceRefTypeParser.INSTANCE);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testValid() throws Exception
+   {
+      List<String> violations = ServiceRefTypeValidator.validate(parse());
+      assertTrue(violations.toString(), violations.isEmpty());
+   }
+
+   @Test
+   public void testNested() throws Exception
+   {
+      ServiceRefTypeImpl ref = parse();
+      ref.setServiceRefName(null);
+      ((HandlerChainTypeImpl) ref.getHandlerChains().getHandlerChain().get(0)).setPortNamePattern("ns:Port*");
+      ((HandlerChainTypeImpl) ref.getHandlerChains().getHandlerChain().get(0)).setServiceNamePattern("not a name");
+      ((InjectionTargetTypeImpl) ref.getInjectionTarget().get(0)).setInjectionTargetName("1st");
+
+      List<String> violations = ServiceRefTypeValidator.validate(ref);
+      assertEquals(violations.toString(), 3, violations.size());
+      assertEquals("/service-ref-name is required", violations.get(0));
+      assertTrue(violations.get(1), violations.get(1).startsWith("/handler-chains/handler-chain[0]/service-name-pattern 'not a name'"));
+      assertTrue(violations.get(2), violations.get(2).startsWith("/injection-target[0]/injection-target-name '1st'"));
+   }
+
+   @Test
+   public void testFacets() throws Exception
+   {
+      DataSourceTypeImpl dataSource = new DataSourceTypeImpl();
+      dataSource.setClassName("org.h2.jdbcx.JdbcDataSource");
+      dataSource.setUrl("jdbc:h2:mem");
+      dataSource.setIsolationLevel("TRANSACTION_READ_COMMITTED");
+      List<String> violations = DataSourceTypeValidator.validate(dataSource);
+      assertEquals(violations.toString(), 1, violations.size());
+      assertEquals("/name is required", violations.get(0));
+
+      dataSource.setName("java:app/ds");
+      dataSource.setUrl("h2:mem");
+      dataSource.setIsolationLevel("TRANSACTION_NONE");
+      violations = DataSourceTypeValidator.validate(dataSource);
+      assertEquals(violations.toString(), 2, violations.size());
+      assertTrue(violations.get(0), violations.get(0).startsWith("/url 'h2:mem'"));
+      assertTrue(violations.get(1), violations.get(1).startsWith("/isolation-level 'TRANSACTION_NONE'"));
+   }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.javaee.test.visitor;
+
+import org.jboss.beach.metadata.javaee.AbstractVisitor;
+import org.jboss.beach.metadata.javaee.DescriptionType;
+import org.jboss.beach.metadata.javaee.HandlerChainsType;
+import org.jboss.beach.metadata.javaee.HandlerType;
+import org.jboss.beach.metadata.javaee.InjectionTargetType;
+import org.jboss.beach.metadata.javaee.PortComponentRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefType;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeImpl;
+import org.jboss.beach.metadata.javaee.ServiceRefTypeParser;
+import org.jboss.beach.metadata.javaee.Traversal;
+import org.jboss.beach.metadata.runtime.ParserSupport;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class VisitorTestCase
+{
+   private static class Recorder extends AbstractVisitor
+   {
+      final List<String> visited = new ArrayList<String>();
+
+      @Override
+      public boolean visit(ServiceRefType value)
+      {
+         visited.add("service-ref");
+         return true;
+      }
+
+      @Override
+      public void endVisit(ServiceRefType value)
+      {
+         visited.add("/service-ref");
+      }
+
+      @Override
+      public void visit(DescriptionType value)
+      {
+         visited.add("description");
+      }
+
+      @Override
+      public boolean visit(PortComponentRefType value)
+      {
+         visited.add(value.getServiceEndpointInterface());
+         return true;
+      }
+
+      @Override
+      public boolean visit(HandlerChainsType value)
+      {
+         visited.add("handler-chains");
+         return true;
+      }
+
+      @Override
+      public boolean visit(HandlerType value)
+      {
+         visited.add(value.getHandlerName());
+         return true;
+      }
+
+      @Override
+      public boolean visit(InjectionTargetType value)
+      {
+         visited.add(value.getInjectionTargetName());
+         return true;
+      }
+   }
+
+   private static ServiceRefTypeImpl parse() throws Exception
+   {
+      InputStream in = VisitorTestCase.class.getResourceAsStream("/org/jboss/beach/metadata/javaee/test/roundtrip/service-ref.xml");
+      try
+      {
+         return ParserSupport.parse(in, ServiceRefTypeParser.INSTANCE);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Test
+   public void testSequenceOrder() throws Exception
+   {
+      ServiceRefTypeImpl serviceRef = parse();
+      Recorder recorder = new Recorder();
+      Traversal.traverse(serviceRef, recorder);
+      List<String> expected = Arrays.asList("service-ref", "description", "org.jboss.test.Endpoint", "org.jboss.test.Other",
+         "handler-chains", "TestHandler", "service", "/service-ref");
+      assertEquals(expected, recorder.visited);
+
+      // unused lists were not touched
+      Field field = ServiceRefTypeImpl.class.getDeclaredField("icon");
+      field.setAccessible(true);
+      assertSame(Collections.emptyList(), field.get(serviceRef));
+   }
+
+   @Test
+   public void testSkipChildren() throws Exception
+   {
+      Recorder recorder = new Recorder()
+      {
+         @Override
+         public boolean visit(HandlerChainsType value)
+         {
+            super.visit(value);
+            return false;
+         }
+      };
+      Traversal.traverse(parse().freeze(), recorder);
+      List<String> expected = Arrays.asList("service-ref", "description", "org.jboss.test.Endpoint", "org.jboss.test.Other",
+         "handler-chains", "service", "/service-ref");
+      assertEquals(expected, recorder.visited);
+   }
+}
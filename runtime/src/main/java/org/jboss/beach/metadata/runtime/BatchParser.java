@@ -0,0 +1,357 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses many descriptors concurrently and hands out the results in the order
+ * of the sources.
+ *
+ * At most maxInFlight descriptors are being parsed or waiting for their turn to
+ * be delivered at any time, submitting the next one blocks until the oldest has
+ * been delivered.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class BatchParser<T>
+{
+   public interface Source
+   {
+      String getName();
+
+      InputStream openStream() throws IOException;
+   }
+
+   public interface Listener<T>
+   {
+      /**
+       * Called in the order of the sources, one at a time, but not necessarily on the calling thread.
+       */
+      void parsed(Result<T> result);
+   }
+
+   public static final class Result<T>
+   {
+      private final int index;
+      private final Source source;
+      private final T value;
+      private final Throwable error;
+
+      Result(int index, Source source, T value, Throwable error)
+      {
+         this.index = index;
+         this.source = source;
+         this.value = value;
+         this.error = error;
+      }
+
+      /**
+       * @return the position of the source in the batch
+       */
+      public int getIndex()
+      {
+         return index;
+      }
+
+      public Source getSource()
+      {
+         return source;
+      }
+
+      /**
+       * @return the metadata or null if parsing failed
+       */
+      public T getValue()
+      {
+         return value;
+      }
+
+      /**
+       * @return why parsing failed or null if it did not
+       */
+      public Throwable getError()
+      {
+         return error;
+      }
+
+      public boolean isSuccess()
+      {
+         return error == null;
+      }
+
+      @Override
+      public String toString()
+      {
+         return source.getName() + (error == null ? "" : ": " + error);
+      }
+   }
+
+   private static class DefaultExecutor
+   {
+      static final ExecutorService INSTANCE = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+      {
+         private final AtomicInteger count = new AtomicInteger();
+
+         public Thread newThread(Runnable r)
+         {
+            Thread t = new Thread(r, "metadata-parser-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         }
+      });
+   }
+
+   private final ElementParser<? extends T> parser;
+   private final Executor executor;
+   private final int maxInFlight;
+   private final StringPool pool;
+
+   /**
+    * Parse on a shared pool of a thread per core.
+    */
+   public BatchParser(ElementParser<? extends T> parser)
+   {
+      this(parser, DefaultExecutor.INSTANCE, Runtime.getRuntime().availableProcessors() * 4);
+   }
+
+   public BatchParser(ElementParser<? extends T> parser, Executor executor, int maxInFlight)
+   {
+      this(parser, executor, maxInFlight, StringPool.global());
+   }
+
+   /**
+    * @param executor runs every parse as a separate task
+    * @param maxInFlight how many results may be pending at most
+    * @param pool the pool for the strings of everything parsed
+    */
+   public BatchParser(ElementParser<? extends T> parser, Executor executor, int maxInFlight, StringPool pool)
+   {
+      if(parser == null)
+         throw new IllegalArgumentException("parser is null");
+      if(executor == null)
+         throw new IllegalArgumentException("executor is null");
+      if(maxInFlight < 1)
+         throw new IllegalArgumentException("maxInFlight must be at least 1");
+      if(pool == null)
+         throw new IllegalArgumentException("pool is null");
+      this.parser = parser;
+      this.executor = executor;
+      this.maxInFlight = maxInFlight;
+      this.pool = pool;
+   }
+
+   public static Source source(final URL url)
+   {
+      return new Source()
+      {
+         public String getName()
+         {
+            return url.toString();
+         }
+
+         public InputStream openStream() throws IOException
+         {
+            return url.openStream();
+         }
+      };
+   }
+
+   public static Source source(final String name, final byte[] content)
+   {
+      return new Source()
+      {
+         public String getName()
+         {
+            return name;
+         }
+
+         public InputStream openStream()
+         {
+            return new ByteArrayInputStream(content);
+         }
+      };
+   }
+
+   /**
+    * @return a result for every source, in the same order
+    */
+   public List<Result<T>> parse(List<? extends Source> sources) throws InterruptedException
+   {
+      final List<Result<T>> results = new ArrayList<Result<T>>(sources.size());
+      parse(sources, new Listener<T>()
+      {
+         public void parsed(Result<T> result)
+         {
+            results.add(result);
+         }
+      });
+      return results;
+   }
+
+   /**
+    * Returns once every result has been delivered to the listener.
+    */
+   public void parse(List<? extends Source> sources, Listener<T> listener) throws InterruptedException
+   {
+      Batch batch = new Batch(sources.size(), listener);
+      for(int i = 0; i < sources.size(); i++)
+      {
+         batch.permits.acquire();
+         Task task = new Task(batch, i, sources.get(i));
+         try
+         {
+            executor.execute(task);
+         }
+         catch(RejectedExecutionException e)
+         {
+            task.run();
+         }
+      }
+      batch.await();
+   }
+
+   private class Batch
+   {
+      final Semaphore permits = new Semaphore(maxInFlight);
+      final Listener<T> listener;
+      // completed, but not yet delivered
+      final Object[] completed;
+      int next;
+      boolean delivering;
+      Throwable listenerFailure;
+
+      Batch(int size, Listener<T> listener)
+      {
+         this.completed = new Object[size];
+         this.listener = listener;
+      }
+
+      /**
+       * Whoever completes the oldest delivers everything which is ready behind it, outside
+       * of the lock, so the other workers go on parsing in the meantime.
+       */
+      @SuppressWarnings("unchecked")
+      void complete(Result<T> result)
+      {
+         synchronized(this)
+         {
+            completed[result.getIndex()] = result;
+            // the one delivering picks it up once it gets there
+            if(delivering)
+               return;
+            delivering = true;
+         }
+         while(true)
+         {
+            Result<T> ready;
+            synchronized(this)
+            {
+               if(next == completed.length || completed[next] == null)
+               {
+                  delivering = false;
+                  if(next == completed.length)
+                     notifyAll();
+                  return;
+               }
+               ready = (Result<T>) completed[next];
+               completed[next++] = null;
+            }
+            try
+            {
+               listener.parsed(ready);
+            }
+            catch(Throwable t)
+            {
+               // keep delivering, the caller gets it once the batch is done
+               synchronized(this)
+               {
+                  if(listenerFailure == null)
+                     listenerFailure = t;
+               }
+            }
+            permits.release();
+         }
+      }
+
+      synchronized void await() throws InterruptedException
+      {
+         while(next < completed.length || delivering)
+            wait();
+         if(listenerFailure instanceof RuntimeException)
+            throw (RuntimeException) listenerFailure;
+         if(listenerFailure instanceof Error)
+            throw (Error) listenerFailure;
+         if(listenerFailure != null)
+            throw new RuntimeException(listenerFailure);
+      }
+   }
+
+   private class Task implements Runnable
+   {
+      private final Batch batch;
+      private final int index;
+      private final Source source;
+
+      Task(Batch batch, int index, Source source)
+      {
+         this.batch = batch;
+         this.index = index;
+         this.source = source;
+      }
+
+      public void run()
+      {
+         T value = null;
+         Throwable error = null;
+         try
+         {
+            InputStream in = source.openStream();
+            try
+            {
+               value = ParserSupport.parse(in, parser, pool);
+            }
+            finally
+            {
+               in.close();
+            }
+         }
+         catch(Throwable t)
+         {
+            error = t;
+         }
+         batch.complete(new Result<T>(index, source, value, error));
+      }
+   }
+}
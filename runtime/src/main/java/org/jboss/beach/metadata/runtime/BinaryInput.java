@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import javax.xml.namespace.QName;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads what a {@link BinaryOutput} wrote.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class BinaryInput
+{
+   private final ByteBuffer buffer;
+   private final StringPool pool;
+   private final List<String> strings = new ArrayList<String>();
+
+   public BinaryInput(byte[] b)
+   {
+      this(ByteBuffer.wrap(b));
+   }
+
+   public BinaryInput(ByteBuffer buffer)
+   {
+      this(buffer, StringPool.global());
+   }
+
+   /**
+    * @param pool where every distinct string of the input is interned
+    */
+   public BinaryInput(ByteBuffer buffer, StringPool pool)
+   {
+      if(pool == null)
+         throw new IllegalArgumentException("pool is null");
+      this.buffer = buffer;
+      this.pool = pool;
+   }
+
+   public int readByte()
+   {
+      return buffer.get() & 0xFF;
+   }
+
+   public boolean readBoolean()
+   {
+      return buffer.get() != 0;
+   }
+
+   public int readVarInt()
+   {
+      int result = 0;
+      int shift = 0;
+      byte b;
+      do
+      {
+         b = buffer.get();
+         result |= (b & 0x7F) << shift;
+         shift += 7;
+      }
+      while(b < 0);
+      return result;
+   }
+
+   public long readVarLong()
+   {
+      long result = 0;
+      int shift = 0;
+      byte b;
+      do
+      {
+         b = buffer.get();
+         result |= (long) (b & 0x7F) << shift;
+         shift += 7;
+      }
+      while(b < 0);
+      return result;
+   }
+
+   public int readSignedVarInt()
+   {
+      int i = readVarInt();
+      return (i >>> 1) ^ -(i & 1);
+   }
+
+   public long readSignedVarLong()
+   {
+      long l = readVarLong();
+      return (l >>> 1) ^ -(l & 1);
+   }
+
+   /**
+    * Read a length or a count. Every byte or item takes up at least a byte, so anything
+    * beyond what remains is damage, which must not get as far as an allocation.
+    */
+   public int readSize()
+   {
+      int size = readVarInt();
+      if(size < 0 || size > buffer.remaining())
+         throw new IllegalStateException("Invalid size " + size + " with " + buffer.remaining() + " bytes remaining");
+      return size;
+   }
+
+   public String readString()
+   {
+      int ref = readVarInt();
+      if(ref > 0)
+         return strings.get(ref - 1);
+      int length = readSize();
+      String s;
+      if(buffer.hasArray())
+      {
+         s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, BinaryOutput.UTF_8);
+         buffer.position(buffer.position() + length);
+      }
+      else
+      {
+         byte[] bytes = new byte[length];
+         buffer.get(bytes);
+         s = new String(bytes, BinaryOutput.UTF_8);
+      }
+      s = pool.intern(s);
+      strings.add(s);
+      return s;
+   }
+
+   public URI readURI()
+   {
+      return URI.create(readString());
+   }
+
+   public List<URI> readURIList()
+   {
+      int size = readSize();
+      List<URI> result = new ArrayList<URI>(size);
+      for(int i = 0; i < size; i++)
+         result.add(readURI());
+      return result;
+   }
+
+   public QName readQName()
+   {
+      String namespaceURI = readString();
+      String localPart = readString();
+      return new QName(namespaceURI, localPart, readString());
+   }
+
+   public boolean hasRemaining()
+   {
+      return buffer.hasRemaining();
+   }
+}
@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the compact binary form: variable length integers and a string table
+ * which is built up as strings are written, so every distinct string is only
+ * written once.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class BinaryOutput
+{
+   /**
+    * Bumped on every incompatible change to the encoding.
+    */
+   public static final int FORMAT_VERSION = 1;
+
+   static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private byte[] buf;
+   private int count;
+   private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+   public BinaryOutput()
+   {
+      this(256);
+   }
+
+   public BinaryOutput(int size)
+   {
+      buf = new byte[size];
+   }
+
+   private void ensureCapacity(int n)
+   {
+      if(count + n > buf.length)
+      {
+         byte[] copy = new byte[Math.max(buf.length << 1, count + n)];
+         System.arraycopy(buf, 0, copy, 0, count);
+         buf = copy;
+      }
+   }
+
+   public void writeByte(int b)
+   {
+      ensureCapacity(1);
+      buf[count++] = (byte) b;
+   }
+
+   public void writeBoolean(boolean b)
+   {
+      writeByte(b ? 1 : 0);
+   }
+
+   public void writeBytes(byte[] b)
+   {
+      ensureCapacity(b.length);
+      System.arraycopy(b, 0, buf, count, b.length);
+      count += b.length;
+   }
+
+   /**
+    * Write an unsigned int in as few bytes as possible, 7 bits at a time.
+    */
+   public void writeVarInt(int i)
+   {
+      ensureCapacity(5);
+      while((i & ~0x7F) != 0)
+      {
+         buf[count++] = (byte) ((i & 0x7F) | 0x80);
+         i >>>= 7;
+      }
+      buf[count++] = (byte) i;
+   }
+
+   public void writeVarLong(long l)
+   {
+      ensureCapacity(10);
+      while((l & ~0x7FL) != 0)
+      {
+         buf[count++] = (byte) ((l & 0x7F) | 0x80);
+         l >>>= 7;
+      }
+      buf[count++] = (byte) l;
+   }
+
+   /**
+    * Write a signed int, zigzag encoded so small negative values stay small.
+    */
+   public void writeSignedVarInt(int i)
+   {
+      writeVarInt((i << 1) ^ (i >> 31));
+   }
+
+   public void writeSignedVarLong(long l)
+   {
+      writeVarLong((l << 1) ^ (l >> 63));
+   }
+
+   /**
+    * Write a reference into the string table or, the first time around, the string itself.
+    */
+   public void writeString(String s)
+   {
+      Integer index = strings.get(s);
+      if(index != null)
+      {
+         writeVarInt(index + 1);
+         return;
+      }
+      strings.put(s, strings.size());
+      byte[] bytes = s.getBytes(UTF_8);
+      writeVarInt(0);
+      writeVarInt(bytes.length);
+      writeBytes(bytes);
+   }
+
+   public void writeURI(URI uri)
+   {
+      writeString(uri.toString());
+   }
+
+   public void writeURIList(List<URI> list)
+   {
+      writeVarInt(list.size());
+      for(URI uri : list)
+         writeURI(uri);
+   }
+
+   public void writeQName(QName name)
+   {
+      writeString(name.getNamespaceURI());
+      writeString(name.getLocalPart());
+      writeString(name.getPrefix());
+   }
+
+   public int size()
+   {
+      return count;
+   }
+
+   public byte[] toByteArray()
+   {
+      byte[] result = new byte[count];
+      System.arraycopy(buf, 0, result, 0, count);
+      return result;
+   }
+
+   public void writeTo(OutputStream out) throws IOException
+   {
+      out.write(buf, 0, count);
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The list of a frozen metadata instance. It can't be modified, so it is
+ * shared as is between frozen instances derived from one another.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class FrozenList<E> extends AbstractList<E> implements RandomAccess
+{
+   private static final FrozenList<Object> EMPTY = new FrozenList<Object>(new Object[0]);
+
+   private final Object[] items;
+
+   private FrozenList(Object[] items)
+   {
+      this.items = items;
+   }
+
+   @SuppressWarnings("unchecked")
+   public static <E> List<E> empty()
+   {
+      return (List<E>) EMPTY;
+   }
+
+   /**
+    * The items themselves are not frozen, so only use it for items which are immutable.
+    *
+    * @return the list itself if it is already frozen, otherwise a frozen copy
+    */
+   @SuppressWarnings("unchecked")
+   public static <E> List<E> copyOf(List<? extends E> list)
+   {
+      if(list instanceof FrozenList)
+         return (List<E>) list;
+      if(list.isEmpty())
+         return empty();
+      return new FrozenList<E>(list.toArray());
+   }
+
+   /**
+    * @param items taken over, so they must not be modified afterwards
+    */
+   public static <E> List<E> of(E[] items)
+   {
+      if(items.length == 0)
+         return empty();
+      return new FrozenList<E>(items);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public E get(int index)
+   {
+      return (E) items[index];
+   }
+
+   @Override
+   public int size()
+   {
+      return items.length;
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helpers for the lists of the generated implementations. A list starts out
+ * as the shared empty list and only gets storage of its own on first use.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class Lists
+{
+   /**
+    * Most repeated elements in a descriptor occur only a few times.
+    */
+   public static final int INITIAL_CAPACITY = 4;
+
+   private Lists()
+   {
+   }
+
+   /**
+    * @return whether the list is shared, so it must be copied before it can be modified
+    */
+   public static boolean isShared(List<?> list)
+   {
+      return list == Collections.EMPTY_LIST || list instanceof FrozenList;
+   }
+
+   /**
+    * @return the list itself or, if it is shared, a modifiable copy
+    */
+   public static <E> List<E> modifiable(List<E> list)
+   {
+      if(!isShared(list))
+         return list;
+      List<E> copy = new ArrayList<E>(Math.max(INITIAL_CAPACITY, list.size()));
+      copy.addAll(list);
+      return copy;
+   }
+
+   /**
+    * @return the list itself if it is shared, otherwise a copy of it
+    */
+   public static <E> List<E> copy(List<E> list)
+   {
+      if(list == null || isShared(list))
+         return list;
+      return new ArrayList<E>(list);
+   }
+
+   /**
+    * @return the list with its capacity trimmed to its size or, if it is empty, the shared empty list
+    */
+   public static <E> List<E> trimToSize(List<E> list)
+   {
+      if(list.isEmpty())
+         return Collections.emptyList();
+      if(list instanceof ArrayList)
+         ((ArrayList<E>) list).trimToSize();
+      return list;
+   }
+}
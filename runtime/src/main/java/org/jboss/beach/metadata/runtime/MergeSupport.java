@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import java.util.List;
+
+/**
+ * Helpers shared by the generated mergers.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class MergeSupport
+{
+   private MergeSupport()
+   {
+   }
+
+   /**
+    * @return the override if it is set, otherwise the base
+    */
+   public static <T> T replace(T base, T override)
+   {
+      return override != null ? override : base;
+   }
+
+   /**
+    * @return a copy of the override if it has any items, otherwise of the base
+    */
+   public static <T> List<T> replace(List<T> base, List<T> override)
+   {
+      return Lists.copy(override == null || override.isEmpty() ? base : override);
+   }
+}
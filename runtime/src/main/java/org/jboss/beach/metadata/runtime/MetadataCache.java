@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps parsed descriptors in their binary form on disk, so an unchanged
+ * descriptor does not have to be parsed again.
+ *
+ * Entries are keyed on the SHA-1 of the descriptor content and the schema
+ * version, which is the VERSION of the generated codec.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class MetadataCache
+{
+   private final File dir;
+   private final byte[] schemaVersion;
+   private final StringPool pool;
+
+   public MetadataCache(File dir, String schemaVersion)
+   {
+      this(dir, schemaVersion, StringPool.global());
+   }
+
+   /**
+    * @param pool the pool for the strings of everything loaded through this cache
+    */
+   public MetadataCache(File dir, String schemaVersion, StringPool pool)
+   {
+      if(dir == null)
+         throw new IllegalArgumentException("dir is null");
+      if(schemaVersion == null)
+         throw new IllegalArgumentException("schemaVersion is null");
+      this.dir = dir;
+      this.schemaVersion = schemaVersion.getBytes(BinaryOutput.UTF_8);
+      if(pool == null)
+         throw new IllegalArgumentException("pool is null");
+      this.pool = pool;
+   }
+
+   /**
+    * @param content the descriptor
+    * @return the metadata, from the cache if possible
+    */
+   public <T> T load(byte[] content, ElementParser<? extends T> parser, BinaryCodec<T> codec) throws IOException, XMLStreamException
+   {
+      File file = new File(dir, key(content) + ".bin");
+      byte[] cached = read(file);
+      if(cached != null)
+      {
+         try
+         {
+            BinaryInput in = new BinaryInput(ByteBuffer.wrap(cached), pool);
+            T value = codec.decode(in);
+            if(!in.hasRemaining())
+               return value;
+         }
+         catch(RuntimeException e)
+         {
+            // garbage, treat as a miss
+         }
+         file.delete();
+      }
+
+      T value = ParserSupport.parse(new ByteArrayInputStream(content), parser, pool);
+      BinaryOutput out = new BinaryOutput(content.length / 2);
+      codec.encode(out, value);
+      store(file, out);
+      return value;
+   }
+
+   private String key(byte[] content)
+   {
+      MessageDigest md;
+      try
+      {
+         md = MessageDigest.getInstance("SHA-1");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new RuntimeException(e);
+      }
+      md.update(schemaVersion);
+      md.update((byte) 0);
+      md.update(content);
+      StringBuilder sb = new StringBuilder(40);
+      for(byte b : md.digest())
+      {
+         sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+         sb.append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+   }
+
+   private static byte[] read(File file) throws IOException
+   {
+      if(!file.isFile())
+         return null;
+      InputStream in = new FileInputStream(file);
+      try
+      {
+         byte[] b = new byte[(int) file.length()];
+         int off = 0;
+         int n;
+         while(off < b.length && (n = in.read(b, off, b.length - off)) != -1)
+            off += n;
+         // truncated, treat as a miss
+         if(off < b.length)
+            return null;
+         return b;
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   /**
+    * Write to a temporary file first, so a concurrent reader never sees half an entry.
+    */
+   private void store(File file, BinaryOutput data) throws IOException
+   {
+      dir.mkdirs();
+      File tmp = File.createTempFile("entry", ".tmp", dir);
+      try
+      {
+         OutputStream out = new FileOutputStream(tmp);
+         try
+         {
+            data.writeTo(out);
+         }
+         finally
+         {
+            out.close();
+         }
+         // if it fails someone else got there first
+         tmp.renameTo(file);
+      }
+      finally
+      {
+         tmp.delete();
+      }
+   }
+}
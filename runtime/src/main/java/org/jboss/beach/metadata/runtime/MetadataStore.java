@@ -0,0 +1,336 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps parsed descriptors in their binary form in a single memory-mapped file,
+ * keyed on the content of the descriptor, so every deployment which ships the same
+ * descriptor, in this JVM or any other on the host, shares the same pages.
+ *
+ * The file is append only. It starts with a header holding the length of what
+ * has been committed, followed by entries of a SHA-1 key, a length and the
+ * encoded metadata. The file is mapped in growing steps, so it may be longer
+ * than what has been committed. An entry only becomes visible once the header has been
+ * updated, so a crash halfway through an append loses nothing but that entry.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public class MetadataStore implements Closeable
+{
+   private static final int MAGIC = 0x424D4453;
+   private static final int HEADER_SIZE = 16;
+   private static final int KEY_SIZE = 20;
+   private static final int MIN_MAPPING = 64 * 1024;
+
+   // a FileLock is held on behalf of the whole JVM, so stores on the same file serialize here first
+   private static final ConcurrentMap<String, Object> monitors = new ConcurrentHashMap<String, Object>();
+
+   private static class Entry
+   {
+      final int offset;
+      final int length;
+
+      Entry(int offset, int length)
+      {
+         this.offset = offset;
+         this.length = length;
+      }
+   }
+
+   private final byte[] schemaVersion;
+   private final StringPool pool;
+   private final File file;
+   private final RandomAccessFile access;
+   private final FileChannel channel;
+   private final Object monitor;
+   private final Map<String, Entry> entries = new HashMap<String, Entry>();
+   // everything up to here has been indexed
+   private int end = HEADER_SIZE;
+   private MappedByteBuffer mapped;
+
+   public MetadataStore(File file, String schemaVersion) throws IOException
+   {
+      this(file, schemaVersion, StringPool.global());
+   }
+
+   /**
+    * @param pool the pool for the strings of everything decoded from this store
+    */
+   public MetadataStore(File file, String schemaVersion, StringPool pool) throws IOException
+   {
+      if(file == null)
+         throw new IllegalArgumentException("file is null");
+      if(schemaVersion == null)
+         throw new IllegalArgumentException("schemaVersion is null");
+      if(pool == null)
+         throw new IllegalArgumentException("pool is null");
+      this.schemaVersion = schemaVersion.getBytes(BinaryOutput.UTF_8);
+      this.pool = pool;
+      File parent = file.getAbsoluteFile().getParentFile();
+      if(parent != null)
+         parent.mkdirs();
+      String path = file.getCanonicalPath();
+      Object monitor = new Object();
+      Object previous = monitors.putIfAbsent(path, monitor);
+      this.monitor = previous != null ? previous : monitor;
+      this.file = file;
+      this.access = new RandomAccessFile(file, "rw");
+      this.channel = access.getChannel();
+      try
+      {
+         synchronized(this.monitor)
+         {
+            FileLock lock = channel.lock();
+            try
+            {
+               if(channel.size() < HEADER_SIZE)
+                  writeHeader(HEADER_SIZE);
+               refresh();
+            }
+            finally
+            {
+               lock.release();
+            }
+         }
+      }
+      catch(IOException e)
+      {
+         access.close();
+         throw e;
+      }
+   }
+
+   /**
+    * @param content the descriptor
+    * @return the metadata, decoded from the store if possible
+    */
+   public <T> T load(byte[] content, ElementParser<? extends T> parser, BinaryCodec<T> codec) throws IOException, XMLStreamException
+   {
+      String key = key(content, codec);
+      ByteBuffer view = view(key);
+      if(view != null)
+      {
+         try
+         {
+            return codec.decode(new BinaryInput(view, pool));
+         }
+         catch(RuntimeException e)
+         {
+            // a damaged entry can't be replaced in an append only file, so just parse
+            return ParserSupport.parse(new ByteArrayInputStream(content), parser, pool);
+         }
+      }
+
+      // parse outside of the lock, so misses in other threads and JVMs go ahead in parallel
+      T value = ParserSupport.parse(new ByteArrayInputStream(content), parser, pool);
+      BinaryOutput out = new BinaryOutput(content.length / 2);
+      codec.encode(out, value);
+      byte[] data = out.toByteArray();
+      synchronized(monitor)
+      {
+         FileLock lock = channel.lock();
+         try
+         {
+            // another thread or JVM might have stored it in the meantime
+            refresh();
+            if(view(key) == null)
+               append(key, data);
+         }
+         finally
+         {
+            lock.release();
+         }
+      }
+      return value;
+   }
+
+   /**
+    * @param content the descriptor
+    * @param codec the codec it was stored with
+    * @return a read-only view of the encoded metadata or null if it is not in the store
+    */
+   public ByteBuffer view(byte[] content, BinaryCodec<?> codec)
+   {
+      return view(key(content, codec));
+   }
+
+   /**
+    * @return the number of entries this store knows of
+    */
+   public synchronized int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * Views already handed out stay valid after the store is closed.
+    */
+   public void close() throws IOException
+   {
+      access.close();
+   }
+
+   private synchronized ByteBuffer view(String key)
+   {
+      Entry entry = entries.get(key);
+      if(entry == null)
+         return null;
+      ByteBuffer view = mapped.duplicate();
+      view.limit(entry.offset + entry.length);
+      view.position(entry.offset);
+      return view.slice().asReadOnlyBuffer();
+   }
+
+   /**
+    * Index whatever has been committed since the last time. Must hold the file lock.
+    */
+   private synchronized void refresh() throws IOException
+   {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      read(header, 0);
+      if(header.getInt(0) != MAGIC || header.getInt(4) != BinaryOutput.FORMAT_VERSION)
+         throw new IOException("Not a metadata store of format " + BinaryOutput.FORMAT_VERSION + ": " + file);
+      long committed = header.getLong(8);
+      if(committed > Integer.MAX_VALUE)
+         throw new IOException("Metadata store is too large: " + committed);
+      if(committed <= end)
+         return;
+      if(mapped == null || committed > mapped.capacity())
+      {
+         // grow in large steps, every mapping stays around until it is collected
+         long size = mapped == null ? MIN_MAPPING : Math.min(2L * mapped.capacity(), Integer.MAX_VALUE);
+         mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.max(size, committed));
+      }
+      int offset = end;
+      byte key[] = new byte[KEY_SIZE];
+      while(offset < committed)
+      {
+         mapped.position(offset);
+         mapped.get(key);
+         int length = mapped.getInt();
+         offset += KEY_SIZE + 4;
+         String hex = hex(key);
+         // first entry wins
+         if(!entries.containsKey(hex))
+            entries.put(hex, new Entry(offset, length));
+         offset += length;
+      }
+      end = offset;
+   }
+
+   /**
+    * Must hold the file lock and have just refreshed.
+    */
+   private void append(String key, byte[] data) throws IOException
+   {
+      ByteBuffer buffer = ByteBuffer.allocate(KEY_SIZE + 4 + data.length);
+      for(int i = 0; i < KEY_SIZE; i++)
+         buffer.put((byte) Integer.parseInt(key.substring(i * 2, i * 2 + 2), 16));
+      buffer.putInt(data.length);
+      buffer.put(data);
+      buffer.flip();
+      int offset;
+      synchronized(this)
+      {
+         offset = end;
+      }
+      write(buffer, offset);
+      // the entry is complete, now commit it
+      writeHeader(offset + buffer.capacity());
+      refresh();
+   }
+
+   private void writeHeader(long committed) throws IOException
+   {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC);
+      header.putInt(BinaryOutput.FORMAT_VERSION);
+      header.putLong(committed);
+      header.flip();
+      write(header, 0);
+   }
+
+   private void read(ByteBuffer buffer, long position) throws IOException
+   {
+      while(buffer.hasRemaining())
+      {
+         if(channel.read(buffer, position + buffer.position()) == -1)
+            throw new IOException("Truncated metadata store " + file);
+      }
+   }
+
+   private void write(ByteBuffer buffer, long position) throws IOException
+   {
+      while(buffer.hasRemaining())
+         channel.write(buffer, position + buffer.position());
+   }
+
+   /**
+    * The codec is part of the key, the same descriptor can be loaded as a different type.
+    */
+   private String key(byte[] content, BinaryCodec<?> codec)
+   {
+      MessageDigest md;
+      try
+      {
+         md = MessageDigest.getInstance("SHA-1");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new RuntimeException(e);
+      }
+      md.update(schemaVersion);
+      md.update((byte) 0);
+      md.update(codec.getClass().getName().getBytes(BinaryOutput.UTF_8));
+      md.update((byte) 0);
+      md.update(content);
+      return hex(md.digest());
+   }
+
+   private static String hex(byte[] bytes)
+   {
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for(byte b : bytes)
+      {
+         sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+         sb.append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+   }
+}
@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Helpers shared by the generated parsers.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class ParserSupport
+{
+   private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+   static
+   {
+      inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+      inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+      inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+   }
+
+   private ParserSupport()
+   {
+   }
+
+   public static XMLStreamReader createReader(InputStream in) throws XMLStreamException
+   {
+      // not all factories are thread safe
+      synchronized(inputFactory)
+      {
+         return inputFactory.createXMLStreamReader(in);
+      }
+   }
+
+   /**
+    * Parse the document element, pooling strings in the global pool.
+    */
+   public static <T> T parse(InputStream in, ElementParser<T> parser) throws XMLStreamException
+   {
+      return parse(in, parser, StringPool.global());
+   }
+
+   /**
+    * Parse the document element.
+    */
+   public static <T> T parse(InputStream in, ElementParser<T> parser, StringPool pool) throws XMLStreamException
+   {
+      XMLStreamReader reader = new PooledStreamReader(createReader(in), pool);
+      try
+      {
+         reader.nextTag();
+         return parser.parse(reader);
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+
+   /**
+    * Read the text only content of the current element, with the surrounding whitespace trimmed.
+    */
+   public static String readText(XMLStreamReader reader) throws XMLStreamException
+   {
+      return reader.getElementText().trim();
+   }
+
+   /**
+    * Read the text only content of the current element as a string value, which is pooled.
+    */
+   public static String readString(XMLStreamReader reader) throws XMLStreamException
+   {
+      return intern(reader, readText(reader));
+   }
+
+   /**
+    * @return the pooled value of the attribute
+    */
+   public static String getAttributeValue(XMLStreamReader reader, int index)
+   {
+      return intern(reader, reader.getAttributeValue(index));
+   }
+
+   /**
+    * @return the instance from the pool of the reader or, if it has none, the global pool
+    */
+   public static String intern(XMLStreamReader reader, String s)
+   {
+      if(reader instanceof PooledStreamReader)
+         return ((PooledStreamReader) reader).getPool().intern(s);
+      return StringPool.global().intern(s);
+   }
+
+   public static boolean parseBoolean(XMLStreamReader reader, String s) throws XMLStreamException
+   {
+      if(s.equals("true") || s.equals("1"))
+         return true;
+      if(s.equals("false") || s.equals("0"))
+         return false;
+      throw invalidValue(reader, s);
+   }
+
+   public static int parseInt(XMLStreamReader reader, String s) throws XMLStreamException
+   {
+      try
+      {
+         return Integer.parseInt(s);
+      }
+      catch(NumberFormatException e)
+      {
+         throw invalidValue(reader, s);
+      }
+   }
+
+   public static long parseLong(XMLStreamReader reader, String s) throws XMLStreamException
+   {
+      try
+      {
+         return Long.parseLong(s);
+      }
+      catch(NumberFormatException e)
+      {
+         throw invalidValue(reader, s);
+      }
+   }
+
+   public static URI parseURI(XMLStreamReader reader, String s) throws XMLStreamException
+   {
+      try
+      {
+         return new URI(s);
+      }
+      catch(URISyntaxException e)
+      {
+         throw invalidValue(reader, s);
+      }
+   }
+
+   /**
+    * Parse a whitespace separated list of URIs.
+    */
+   public static List<URI> parseURIList(XMLStreamReader reader, String s) throws XMLStreamException
+   {
+      List<URI> result = new ArrayList<URI>();
+      StringTokenizer st = new StringTokenizer(s);
+      while(st.hasMoreTokens())
+         result.add(parseURI(reader, st.nextToken()));
+      return result;
+   }
+
+   /**
+    * Read the content of the current element as a QName, resolving the prefix in its scope.
+    */
+   public static QName readQName(XMLStreamReader reader) throws XMLStreamException
+   {
+      String s = readText(reader);
+      // the end tag still has the namespaces of its element in scope
+      int i = s.indexOf(':');
+      String prefix = i == -1 ? XMLConstants.DEFAULT_NS_PREFIX : s.substring(0, i);
+      String namespaceURI = reader.getNamespaceURI(prefix);
+      if(namespaceURI == null)
+      {
+         if(i != -1)
+            throw invalidValue(reader, s);
+         namespaceURI = XMLConstants.NULL_NS_URI;
+      }
+      return new QName(namespaceURI, s.substring(i + 1), prefix);
+   }
+
+   /**
+    * Skip the current element including all its content.
+    */
+   public static void skip(XMLStreamReader reader) throws XMLStreamException
+   {
+      int depth = 1;
+      while(depth > 0)
+      {
+         int event = reader.next();
+         if(event == XMLStreamConstants.START_ELEMENT)
+            depth++;
+         else if(event == XMLStreamConstants.END_ELEMENT)
+            depth--;
+      }
+   }
+
+   public static XMLStreamException unexpectedElement(XMLStreamReader reader)
+   {
+      return new XMLStreamException("Unexpected element " + reader.getName(), reader.getLocation());
+   }
+
+   public static XMLStreamException invalidValue(XMLStreamReader reader, String value)
+   {
+      return new XMLStreamException("Invalid value '" + value + "' in " + reader.getName(), reader.getLocation());
+   }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes equal strings from different descriptors the same instance, so the
+ * copies can be collected. The pool only holds weak references, so it does
+ * not keep anything alive by itself.
+ *
+ * Use {@link #global()} or a pool per deployment.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class StringPool
+{
+   private static final StringPool GLOBAL = new StringPool();
+
+   // a String and its char[] with headers, in bytes
+   private static final int STRING_OVERHEAD = 40;
+
+   private static final int SEGMENTS = 16;
+
+   private final Segment[] segments = new Segment[SEGMENTS];
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong bytesSaved = new AtomicLong();
+
+   private static final class Segment
+   {
+      final Map<String, WeakReference<String>> map = new WeakHashMap<String, WeakReference<String>>();
+   }
+
+   public StringPool()
+   {
+      for(int i = 0; i < SEGMENTS; i++)
+         segments[i] = new Segment();
+   }
+
+   public static StringPool global()
+   {
+      return GLOBAL;
+   }
+
+   /**
+    * @return the pooled instance equal to s
+    */
+   public String intern(String s)
+   {
+      if(s == null)
+         return null;
+      int h = s.hashCode();
+      Segment segment = segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+      synchronized(segment)
+      {
+         WeakReference<String> ref = segment.map.get(s);
+         String pooled = ref != null ? ref.get() : null;
+         if(pooled != null)
+         {
+            if(pooled != s)
+            {
+               hits.incrementAndGet();
+               bytesSaved.addAndGet(STRING_OVERHEAD + 2L * s.length());
+            }
+            return pooled;
+         }
+         segment.map.put(s, new WeakReference<String>(s));
+         return s;
+      }
+   }
+
+   /**
+    * @return the number of strings which were replaced by a pooled instance
+    */
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   /**
+    * @return an estimate of the memory taken by the strings which were replaced by a pooled instance
+    */
+   public long getBytesSaved()
+   {
+      return bytesSaved.get();
+   }
+
+   /**
+    * @return the number of distinct strings in the pool, for diagnostics
+    */
+   public int size()
+   {
+      int size = 0;
+      for(Segment segment : segments)
+      {
+         synchronized(segment)
+         {
+            size += segment.map.size();
+         }
+      }
+      return size;
+   }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers shared by the generated validators. Each check adds a message to the
+ * violations if it fails, the path of the value is only built for a violation.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class ValidationSupport
+{
+   private ValidationSupport()
+   {
+   }
+
+   /**
+    * Prefix the violations added from start on, which were found relative to a child,
+    * with the path of that child.
+    *
+    * @param index the index of the child in its list or -1 if it is not in a list
+    */
+   public static void prefix(List<String> violations, int start, String path, String name, int index)
+   {
+      for(int i = start; i < violations.size(); i++)
+         violations.set(i, path + "/" + name + (index < 0 ? "" : "[" + index + "]") + violations.get(i));
+   }
+
+   public static void required(List<String> violations, String path, String name, Object value)
+   {
+      if(value == null)
+         violations.add(path + "/" + name + " is required");
+   }
+
+   public static void minOccurs(List<String> violations, String path, String name, List<?> values, int minOccurs)
+   {
+      if(values.size() < minOccurs)
+         violations.add(path + "/" + name + " occurs " + values.size() + " times, at least " + minOccurs + " expected");
+   }
+
+   /**
+    * @param pattern the pattern, which must match the complete value
+    */
+   public static void pattern(List<String> violations, String path, String name, String value, Pattern pattern)
+   {
+      if(!pattern.matcher(value).matches())
+         violations.add(path + "/" + name + " '" + value + "' does not match " + pattern.pattern());
+   }
+
+   public static void enumeration(List<String> violations, String path, String name, String value, Set<String> values)
+   {
+      if(!values.contains(value))
+         violations.add(path + "/" + name + " '" + value + "' is not one of " + values);
+   }
+
+   public static void length(List<String> violations, String path, String name, String value, int minLength, int maxLength)
+   {
+      if(value.length() < minLength || value.length() > maxLength)
+         violations.add(path + "/" + name + " '" + value + "' is not between " + minLength + " and " + maxLength + " characters long");
+   }
+
+   public static void range(List<String> violations, String path, String name, long value, long minInclusive, long maxInclusive)
+   {
+      if(value < minInclusive || value > maxInclusive)
+         violations.add(path + "/" + name + " " + value + " is not between " + minInclusive + " and " + maxInclusive);
+   }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright (c) 2010, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.beach.metadata.runtime;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Helpers shared by the generated writers.
+ *
+ * @author <a href="mailto:cdewolf@redhat.com">Carlo de Wolf</a>
+ */
+public final class WriterSupport
+{
+   private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+   private WriterSupport()
+   {
+   }
+
+   public static XMLStreamWriter createWriter(OutputStream out) throws XMLStreamException
+   {
+      // not all factories are thread safe
+      synchronized(outputFactory)
+      {
+         return outputFactory.createXMLStreamWriter(out, "UTF-8");
+      }
+   }
+
+   /**
+    * Write a document with the value as document element.
+    */
+   public static <T> void write(OutputStream out, String namespaceURI, String localName, ElementWriter<T> elementWriter, T value) throws XMLStreamException
+   {
+      XMLStreamWriter writer = createWriter(out);
+      try
+      {
+         writer.writeStartDocument("UTF-8", "1.0");
+         writeStartElement(writer, namespaceURI, localName);
+         elementWriter.write(writer, value);
+         writer.writeEndElement();
+         writer.writeEndDocument();
+         writer.flush();
+      }
+      finally
+      {
+         writer.close();
+      }
+   }
+
+   /**
+    * Start an element, declaring the namespace as default if it is not bound yet.
+    */
+   public static void writeStartElement(XMLStreamWriter writer, String namespaceURI, String localName) throws XMLStreamException
+   {
+      String prefix = writer.getPrefix(namespaceURI);
+      if(prefix == null)
+      {
+         writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, localName, namespaceURI);
+         writer.writeDefaultNamespace(namespaceURI);
+         // in the scope of the new element
+         writer.setDefaultNamespace(namespaceURI);
+      }
+      else
+         writer.writeStartElement(prefix, localName, namespaceURI);
+   }
+
+   public static void writeElement(XMLStreamWriter writer, String namespaceURI, String localName, String text) throws XMLStreamException
+   {
+      writeStartElement(writer, namespaceURI, localName);
+      writer.writeCharacters(text);
+      writer.writeEndElement();
+   }
+
+   /**
+    * Write an element with a QName as content, declaring its prefix on the element itself if needed.
+    */
+   public static void writeElement(XMLStreamWriter writer, String namespaceURI, String localName, QName value) throws XMLStreamException
+   {
+      writeStartElement(writer, namespaceURI, localName);
+      String valueNamespaceURI = value.getNamespaceURI();
+      String text = value.getLocalPart();
+      if(valueNamespaceURI.length() > 0)
+      {
+         String prefix = writer.getPrefix(valueNamespaceURI);
+         if(prefix == null || prefix.length() == 0)
+         {
+            prefix = value.getPrefix().length() > 0 ? value.getPrefix() : "ns";
+            writer.writeNamespace(prefix, valueNamespaceURI);
+            writer.setPrefix(prefix, valueNamespaceURI);
+         }
+         text = prefix + ":" + text;
+      }
+      writer.writeCharacters(text);
+      writer.writeEndElement();
+   }
+
+   /**
+    * @return the items separated by a space, as in an xsd:list
+    */
+   public static String toString(List<?> list)
+   {
+      StringBuilder sb = new StringBuilder();
+      for(Object item : list)
+      {
+         if(sb.length() > 0)
+            sb.append(' ');
+         sb.append(item);
+      }
+      return sb.toString();
+   }
+}